@@ -0,0 +1,69 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class BinaryUtil {
+	protected static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Writes a text, possibly <code>null</code>, as its UTF-8 length and
+	 * bytes.
+	 */
+	public void writeText(DataOutputStream out, String text) throws IOException {
+		if (text == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	public String readText(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		ByteBuffer bytes = ByteBuffer.allocate(4 * values.length);
+		bytes.asIntBuffer().put(values);
+		out.write(bytes.array());
+	}
+
+	public int[] readInts(ByteBuffer buffer) {
+		int[] values = new int[buffer.getInt()];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + 4 * values.length);
+		return values;
+	}
+
+	/**
+	 * Reads a stream to its end, then closes it.
+	 *
+	 * @return the bytes or <code>null</code> if the stream is <code>null</code>
+	 */
+	public byte[] readBytes(InputStream stream) {
+		if (stream == null)
+			return null;
+		try (InputStream input = stream) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[BUFFER_SIZE];
+			for (int count = input.read(buffer); count >= 0; count = input.read(buffer))
+				bytes.write(buffer, 0, count);
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+}
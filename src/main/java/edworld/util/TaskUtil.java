@@ -0,0 +1,29 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.util;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+public class TaskUtil {
+	/**
+	 * Waits for the result of a task submitted to an executor, running it in
+	 * the calling thread if no thread of the executor started it yet. So a
+	 * task may wait for the tasks it submitted to the same executor without
+	 * ever blocking all of its threads.
+	 */
+	public <T> T result(FutureTask<T> task) {
+		task.run();
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalArgumentException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalArgumentException(e.getCause());
+		}
+	}
+}
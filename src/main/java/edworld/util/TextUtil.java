@@ -1,20 +1,74 @@
 // This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
 package edworld.util;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.text.Normalizer;
-import java.util.Scanner;
+import java.util.Arrays;
 
 public class TextUtil {
+	protected static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Reads a UTF-8 stream to its end, then closes it. As a single final line
+	 * terminator is not part of the text, a text saved with or without a final
+	 * line break is read the same.
+	 *
+	 * @return the text or <code>null</code> if the stream is <code>null</code>
+	 */
 	public String extractText(InputStream stream) {
-		Scanner scanner = new Scanner(stream, "UTF-8");
+		if (stream == null)
+			return null;
+		try (InputStream input = stream) {
+			byte[] bytes = new byte[BUFFER_SIZE];
+			int length = 0;
+			while (true) {
+				int count = input.read(bytes, length, bytes.length - length);
+				if (count < 0)
+					break;
+				length += count;
+				if (length == bytes.length)
+					bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+			}
+			return decode(bytes, length);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Reads a UTF-8 file like {@link #extractText(InputStream)}, in a single
+	 * read into memory, so that the file is not kept open.
+	 */
+	public String extractText(File file) {
 		try {
-			return scanner.useDelimiter("\\Z").next();
-		} finally {
-			scanner.close();
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			return decode(bytes, bytes.length);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
 		}
 	}
 
+	/**
+	 * Decodes UTF-8 bytes straight into a text, less a final line terminator
+	 * (CR LF, LF, CR, NEL, LS or PS).
+	 */
+	private String decode(byte[] bytes, int length) {
+		if (length > 1 && bytes[length - 2] == '\r' && bytes[length - 1] == '\n')
+			length -= 2;
+		else if (length > 0 && (bytes[length - 1] == '\n' || bytes[length - 1] == '\r'))
+			length--;
+		else if (length > 1 && bytes[length - 2] == (byte) 0xC2 && bytes[length - 1] == (byte) 0x85)
+			length -= 2;
+		else if (length > 2 && bytes[length - 3] == (byte) 0xE2 && bytes[length - 2] == (byte) 0x80
+				&& (bytes[length - 1] == (byte) 0xA8 || bytes[length - 1] == (byte) 0xA9))
+			length -= 3;
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
 	public String removeDiacritics(String text) {
 		return Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("[^\\p{ASCII}]", "");
 	}
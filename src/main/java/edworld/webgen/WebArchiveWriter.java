@@ -0,0 +1,131 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes web artifacts, and any other generated file, as entries of a single
+ * ZIP archive streamed through one buffered file channel, instead of one file
+ * per artifact. Each entry is either compressed or stored. The archive is
+ * written into a temporary file that replaces the target file only when
+ * finished, so a failed generation leaves any previous archive intact.
+ */
+public class WebArchiveWriter implements Closeable {
+	protected static final int BUFFER_SIZE = 256 * 1024;
+
+	private File archive;
+	private File temp;
+	private String charSet;
+	private ZipOutputStream zip;
+	private boolean compressed = true;
+
+	/**
+	 * @param archive
+	 *            the ZIP file to be written, whose directory is created if
+	 *            needed
+	 * @param charSet
+	 *            the encoding of the written entries
+	 */
+	public WebArchiveWriter(File archive, String charSet) throws IOException {
+		this.archive = archive.getAbsoluteFile();
+		this.charSet = charSet;
+		this.archive.getParentFile().mkdirs();
+		temp = File.createTempFile(archive.getName(), ".tmp", this.archive.getParentFile());
+		FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		zip = new ZipOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+	}
+
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+	/**
+	 * Sets whether entries written without an explicit choice are compressed
+	 * (the default) or stored.
+	 */
+	public void setCompressed(boolean compressed) {
+		this.compressed = compressed;
+	}
+
+	/**
+	 * Sets the compression level of compressed entries, from 0 to 9.
+	 */
+	public void setCompressionLevel(int level) {
+		zip.setLevel(level);
+	}
+
+	public void write(WebArtifact artifact) throws IOException {
+		write(artifact.getFileName(), artifact.getContent());
+	}
+
+	public void write(String fileName, String content) throws IOException {
+		write(fileName, content, compressed);
+	}
+
+	/**
+	 * Writes an entry of the archive.
+	 * 
+	 * @param fileName
+	 *            the entry name, which may include directories separated by
+	 *            <code>/</code>
+	 * @param compressed
+	 *            whether the entry is compressed or stored
+	 */
+	public void write(String fileName, String content, boolean compressed) throws IOException {
+		byte[] bytes = content.getBytes(charSet);
+		ZipEntry entry = new ZipEntry(fileName);
+		if (!compressed) {
+			CRC32 crc = new CRC32();
+			crc.update(bytes);
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(bytes.length);
+			entry.setCompressedSize(bytes.length);
+			entry.setCrc(crc.getValue());
+		} else
+			entry.setMethod(ZipEntry.DEFLATED);
+		zip.putNextEntry(entry);
+		zip.write(bytes);
+		zip.closeEntry();
+	}
+
+	/**
+	 * Completes the archive and puts it in place of the target file.
+	 */
+	public void finish() throws IOException {
+		zip.close();
+		zip = null;
+		try {
+			Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Discards the archive if it was not finished.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (zip != null)
+			try {
+				zip.close();
+			} finally {
+				zip = null;
+				temp.delete();
+			}
+	}
+}
@@ -2,25 +2,19 @@
 package edworld.webgen;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 import edworld.util.TextUtil;
 
 public class WebArtifact {
-	private static final String PARAMETER_SUFFIX_REGEX = "::.*";
+	protected static final String PARAMETER_SUFFIX_REGEX = "::.*";
+	protected static final String LINK_SUFFIX_REGEX = ".*::link\\s*";
+	protected static final String LINK_TEMPLATE_SUFFIX = "-link";
 	protected static final String CONTENT_PLACE = "${content}";
 	protected static final String CONTENT_REGEX = "\\$\\{content\\}";
 	protected static final String ITEM_TEMPLATE_REGEX = "\\$\\{data:([^\\}]+)\\}";
@@ -44,22 +38,24 @@ public class WebArtifact {
 	private String fileName;
 	private int dataInputs;
 	private int dataOutputs;
-	protected Map<String, String> dataBehavior;
-	protected Map<String, String> dataAlias;
-	private WebTemplateFinder templateFinder;
-	protected Document data;
+	private int menuEntries;
+	private List<Integer> componentSizes = new ArrayList<Integer>();
+	protected WebContext context;
+	private WebData data;
+	private boolean dataRead;
 	protected Stack<String> parentContext = new Stack<String>();
 	protected List<String> components = new ArrayList<String>();
+	protected List<String> searchTexts = new ArrayList<String>();
+	protected WebComponentMemo.Recording recording;
+	protected WebProfiler.Session profile;
+	protected WebComponentMemo.Recording segment;
+	private List<int[]> componentMarkers;
 
-	public WebArtifact(String title, String content, String fileName, Map<String, String> dataBehavior,
-			Map<String, String> dataAlias, WebTemplateFinder templateFinder, Document data) {
+	public WebArtifact(String title, String content, String fileName, WebContext context) {
 		this.title = title;
 		this.content = content;
 		this.fileName = fileName;
-		this.dataBehavior = dataBehavior;
-		this.dataAlias = dataAlias;
-		this.templateFinder = templateFinder;
-		this.data = data;
+		this.context = context;
 		parentContext.push(CONTENT_PLACE);
 	}
 
@@ -67,6 +63,20 @@ public class WebArtifact {
 		return title;
 	}
 
+	/**
+	 * @return the data of the own context of this artifact, read from the
+	 *         context on first use, or <code>null</code> if the context has no
+	 *         data
+	 * @see WebContext#getData(String)
+	 */
+	protected WebData getData() {
+		if (!dataRead) {
+			data = context.getData(title);
+			dataRead = true;
+		}
+		return data;
+	}
+
 	public String getContent() {
 		return content;
 	}
@@ -95,40 +105,283 @@ public class WebArtifact {
 		this.dataOutputs = dataOutputs;
 	}
 
+	/**
+	 * The texts of the headings and data items rendered into this artifact,
+	 * for building a search index.
+	 */
+	public List<String> getSearchTexts() {
+		return searchTexts;
+	}
+
+	public int getMenuEntries() {
+		return menuEntries;
+	}
+
+	public void setMenuEntries(int menuEntries) {
+		this.menuEntries = menuEntries;
+	}
+
+	/**
+	 * The size, in characters, of the content rendered for each line given to
+	 * {@link #updateArtifact(String)}, not counting the content of the lines
+	 * nested into it.
+	 */
+	public List<Integer> getComponentSizes() {
+		return componentSizes;
+	}
+
+	/**
+	 * Sets the profile to which the template lookups, data rows and nested
+	 * renderings of this artifact are attributed, or <code>null</code> for no
+	 * profiling.
+	 */
+	public void setProfile(WebProfiler.Session profile) {
+		this.profile = profile;
+	}
+
 	public void updateArtifact(String line) {
 		updateLevel(line);
 		String contentPlace = parentContext.peek();
-		setContent(apply(component(line), getContent(), contentPlace));
+		String component = component(line);
+		componentSizes.add(component.length());
+		if (segment != null)
+			componentMarkers.add(WebComponentMemo.markerIndexes(component));
+		setContent(apply(component, getContent(), contentPlace));
 	}
 
 	private void updateLevel(String line) {
+		int level = level(line);
+		while (level > 0 && parentContext.size() > level)
+			parentContext.pop();
+	}
+
+	/**
+	 * @return the nesting level of a line, given by its initial wiki markers,
+	 *         <code>1</code> for a top-level component or <code>0</code> for
+	 *         a line without markers
+	 */
+	public static int level(String line) {
 		int level = 0;
 		int pos = 0;
-		while (pos < line.length() && " *#".contains(line.substring(pos, pos + 1))) {
-			if ("*#".contains(line.substring(pos, pos + 1)))
+		while (pos < line.length() && " *#".indexOf(line.charAt(pos)) >= 0) {
+			if (line.charAt(pos) != ' ')
 				level++;
 			pos++;
 		}
-		while (level > 0 && parentContext.size() > level)
-			parentContext.pop();
+		return level;
+	}
+
+	/**
+	 * Makes this artifact, still holding only its content place, render a
+	 * section of a page apart from the artifact of the page, leaving markers
+	 * in place of the ids it allocates.
+	 * 
+	 * @see #appendSection(WebArtifact)
+	 */
+	public void startSection() {
+		segment = new WebComponentMemo.Recording();
+		componentMarkers = new ArrayList<int[]>();
+	}
+
+	/**
+	 * Appends a section rendered apart to the content of this artifact,
+	 * allocating the ids of the section in order, as if its lines were
+	 * rendered into this artifact.
+	 * 
+	 * @return whether the section was appended, i.e. its data lookups give the
+	 *         same results with the ids allocated here; otherwise its lines
+	 *         must be rendered into this artifact
+	 */
+	public boolean appendSection(WebArtifact section) {
+		String content = section.getContent();
+		if (!content.endsWith(CONTENT_PLACE))
+			return false;
+		WebComponentMemo.Entry entry = section.segment
+				.toEntry(content.substring(0, content.length() - CONTENT_PLACE.length()), section.dataOutputs);
+		int allocated = components.size();
+		String[] ids = new String[entry.getIdBases().length];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = allocateId(entry.getIdBases()[i]);
+		if (!entry.matches(getData(), context.getDefaultData(), textUtil.standardId(getTitle()), ids)) {
+			components.subList(allocated, components.size()).clear();
+			return false;
+		}
+		setContent(getContent().replace(CONTENT_PLACE, entry.resolve(ids) + CONTENT_PLACE));
+		dataInputs += section.dataInputs;
+		dataOutputs += section.dataOutputs;
+		searchTexts.addAll(section.searchTexts);
+		for (int i = 0; i < section.componentSizes.size(); i++)
+			componentSizes.add(WebComponentMemo.resolvedLength(section.componentSizes.get(i),
+					section.componentMarkers.get(i), ids));
+		return true;
+	}
+
+	/**
+	 * Counts the data inputs and outputs of a line the way
+	 * {@link #updateArtifact(String)} renders it, allocating the same ids and
+	 * looking up the same data rows, but counting the entry elements of the
+	 * templates instead of expanding them into content.
+	 */
+	public void analyzeArtifact(String line) {
+		WebComponent component = new WebComponent(line, context.getXmlDocuments());
+		String id = createId(component);
+		String template = template(component.getType(), component.getReplacements());
+		int inputs = countInputs(template) + analyzeHeader(component, template) + analyzeData(id, component, template);
+		if (isForm(template))
+			for (String field : component.getParameters())
+				inputs += analyzeInputField(field);
+		else
+			for (String parameter : component.getParameters())
+				inputs += countInputs(parameter);
+		dataInputs += inputs;
+	}
+
+	private int analyzeHeader(WebComponent component, String template) {
+		int inputs = 0;
+		Matcher matcher = Pattern.compile(HEADER_TEMPLATE_REGEX).matcher(template);
+		while (matcher.find()) {
+			String[] templates = matcher.group(1).split("@", 2);
+			inputs += countInputs(rowTemplate(templates));
+			for (String parameter : component.getParameters())
+				inputs += analyzeItem(template(templates[0] + parameterSuffix(parameter), null),
+						parameterName(parameterTitle(parameter)));
+		}
+		return inputs;
+	}
+
+	private int analyzeData(String id, WebComponent component, String template) {
+		int inputs = 0;
+		if (template.contains("${data}"))
+			inputs += countInputs(data(id, component));
+		Matcher matcher = Pattern.compile(ITEM_TEMPLATE_REGEX).matcher(template);
+		while (matcher.find()) {
+			String[] templates = matcher.group(1).split("@", 2);
+			inputs += analyzeRows(templates[0], id, component, rowTemplate(templates));
+		}
+		return inputs;
+	}
+
+	private int analyzeRows(String itemTemplate, String id, WebComponent component, String rowTemplate) {
+		dataOutputs += Math.max(1, component.getParameters().length);
+		if (getData() == null)
+			return 0;
+		DataRows rows = dataRows(id, component);
+		int[][] cells = getDataFields(component.getParameters(), rows.source, rows.nodes);
+		String[] fields = component.getParameters();
+		int inputs = rows.nodes.length * countInputs(rowTemplate);
+		for (int[] rowCells : cells)
+			for (int j = 0; j < rowCells.length; j++)
+				inputs += analyzeItem(
+						template(j < fields.length ? dataItemTemplate(itemTemplate, fields[j]) : itemTemplate, null),
+						rows.source.textContent(rowCells[j]));
+		return inputs;
+	}
+
+	private int analyzeItem(String item, String title) {
+		if (item.contains(ID_PLACE))
+			createItemId(title);
+		return countInputs(item);
+	}
+
+	private int analyzeInputField(String field) {
+		String id = createId(field);
+		WebComponent component = new WebComponent("{" + getInput(field) + " " + field + "}",
+				context.getXmlDocuments());
+		String template = template(component.getType(), component.getReplacements());
+		return countInputs(template) + analyzeData(id, component, template);
 	}
 
 	private String apply(String component, String parent, String place) {
-		Matcher matcher = Pattern.compile(INPUT_ELEMENTS_REGEX).matcher(component);
-		while (matcher.find())
-			dataInputs++;
+		dataInputs += countInputs(component);
 		return parent.replace(place, component + place);
 	}
 
+	/**
+	 * @return the number of data entry elements (buttons, inputs and selects)
+	 *         in a piece of HTML
+	 */
+	private static int countInputs(String html) {
+		int count = 0;
+		Matcher matcher = Pattern.compile(INPUT_ELEMENTS_REGEX).matcher(html);
+		while (matcher.find())
+			count++;
+		return count;
+	}
+
 	private String component(String line) {
-		WebComponent component = new WebComponent(line);
+		WebComponent component = new WebComponent(line, context.getXmlDocuments());
+		WebComponentMemo memo = context.getComponentMemo();
+		WebComponentMemo.Key key = new WebComponentMemo.Key(component);
+		WebComponentMemo.Entry entry = memo.get(key);
+		if (entry != null) {
+			String content = reuse(entry);
+			if (content != null) {
+				memo.hit();
+				return content;
+			}
+		}
+		memo.miss();
+		recording = new WebComponentMemo.Recording();
+		int outputs = dataOutputs;
+		try {
+			String content = render(component);
+			memo.put(key, recording.toEntry(content, dataOutputs - outputs));
+			return segment == null ? recording.resolve(content)
+					: WebComponentMemo.resolve(content, segmentMarkers(recording.getIds()));
+		} finally {
+			recording = null;
+		}
+	}
+
+	private String reuse(WebComponentMemo.Entry entry) {
+		int allocated = components.size();
+		String[] ids = new String[entry.getIdBases().length];
+		// the ids are allocated speculatively, so they are recorded into the
+		// section only once the entry is reused
+		WebComponentMemo.Recording sectionSegment = segment;
+		segment = null;
+		try {
+			for (int i = 0; i < ids.length; i++)
+				ids[i] = allocateId(entry.getIdBases()[i]);
+		} finally {
+			segment = sectionSegment;
+		}
+		if (!entry.matches(getData(), context.getDefaultData(), textUtil.standardId(getTitle()), ids)) {
+			components.subList(allocated, components.size()).clear();
+			return null;
+		}
+		if (segment != null)
+			for (int i = 0; i < ids.length; i++)
+				segment.allocated(entry.getIdBases()[i], ids[i]);
+		pushContext(ids[0]);
+		dataOutputs += entry.getDataOutputs();
+		searchTexts.addAll(Arrays.asList(entry.getSearchTexts()));
+		if (segment == null)
+			return entry.resolve(ids);
+		entry.replay(segment, ids);
+		return entry.resolve(segmentMarkers(ids));
+	}
+
+	/**
+	 * The markers standing for ids allocated while rendering a section apart.
+	 */
+	private String[] segmentMarkers(String[] ids) {
+		String[] markers = new String[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			markers[i] = segment.marker(ids[i]);
+		return markers;
+	}
+
+	private String render(WebComponent component) {
 		String id = createId(component);
 		String contentPlace = pushContext(id);
-		String content = fillMetaData(templateFinder.getTemplate(component.getType(), component.getReplacements()), id,
-				component.getTitle());
+		String content = fillMetaData(template(component.getType(), component.getReplacements()),
+				idText(id), component.getTitle());
+		if (context.isHeadingTemplate(component.getType()))
+			indexText(component.getTitle());
 		content = resolveHeader(id, component, content);
 		content = resolveData(id, component, content);
-		if (content.toLowerCase().contains("</form>") || content.toLowerCase().contains("</fieldset>"))
+		if (isForm(content))
 			content = content.replaceAll(CONTENT_REGEX,
 					Matcher.quoteReplacement(generateInputFields(component.getParameters()) + contentPlace))
 					+ LINE_BREAK;
@@ -139,39 +392,54 @@ public class WebArtifact {
 		return content;
 	}
 
+	private static boolean isForm(String html) {
+		String lowerCaseHtml = html.toLowerCase();
+		return lowerCaseHtml.contains("</form>") || lowerCaseHtml.contains("</fieldset>");
+	}
+
+	/**
+	 * The row template of a <code>${data:item@row}</code> or
+	 * <code>${header:item@row}</code> place, or the bare content place if the
+	 * place names no row template.
+	 */
+	private String rowTemplate(String[] templates) {
+		return templates.length < 2 ? CONTENT_PLACE : template(templates[1], null);
+	}
+
 	private String resolveData(String id, WebComponent component, String content) {
 		if (content.contains("${data}"))
 			content = content.replaceAll("\\$\\{data\\}", Matcher.quoteReplacement(data(id, component)));
 		Matcher matcher = Pattern.compile(ITEM_TEMPLATE_REGEX).matcher(content);
 		while (matcher.find()) {
 			String[] templates = matcher.group(1).split("@", 2);
-			String rowTemplate = templates.length < 2 ? CONTENT_PLACE : templateFinder.getTemplate(templates[1], null);
 			content = content.replaceAll("\\$\\{data:" + matcher.group(1) + "\\}",
-					Matcher.quoteReplacement(buildComponentData(templates[0], id, component, rowTemplate)));
+					Matcher.quoteReplacement(buildComponentData(templates[0], id, component, rowTemplate(templates))));
 		}
 		return content;
 	}
 
 	private String data(String dataId, WebComponent component) {
 		dataOutputs++;
-		XPath xpath = XPathFactory.newInstance().newXPath();
-		try {
-			if (component.getXmlData() == null)
-				return xpath.compile("//" + textUtil.standardId(getTitle()) + "/" + dataId + "/text()").evaluate(data);
-			else
-				return xpath.compile("//" + dataId + "/text()").evaluate(component.getXmlData());
-		} catch (XPathExpressionException e) {
-			throw new IllegalArgumentException(e);
-		}
+		if (component.getXmlData() != null)
+			return text(component.getXmlData(), false, null, dataId);
+		return getData() == null ? "" : text(getData(), true, textUtil.standardId(getTitle()), dataId);
+	}
+
+	private String text(WebData source, boolean pageContext, String dataContext, String dataId) {
+		String result = dataContext == null ? source.text(dataId) : source.text(dataContext, dataId);
+		if (recording != null)
+			recording.text(source, pageContext, dataContext, dataId, true, result);
+		if (segment != null)
+			segment.text(source, pageContext, dataContext, dataId, true, result);
+		return result;
 	}
 
 	private String resolveHeader(String id, WebComponent component, String content) {
 		Matcher matcher = Pattern.compile(HEADER_TEMPLATE_REGEX).matcher(content);
 		while (matcher.find()) {
 			String[] templates = matcher.group(1).split("@", 2);
-			String rowTemplate = templates.length < 2 ? CONTENT_PLACE : templateFinder.getTemplate(templates[1], null);
 			content = content.replaceAll("\\$\\{header:" + matcher.group(1) + "\\}",
-					Matcher.quoteReplacement(buildComponentHeader(templates[0], component, rowTemplate)));
+					Matcher.quoteReplacement(buildComponentHeader(templates[0], component, rowTemplate(templates))));
 		}
 		return content;
 	}
@@ -184,13 +452,25 @@ public class WebArtifact {
 	}
 
 	private String generateTextInput(String field, String description, String placeHolder, String value) {
+		if (profile == null)
+			return renderTextInput(field, description, placeHolder, value);
+		profile.enter("input " + field);
+		try {
+			return renderTextInput(field, description, placeHolder, value);
+		} finally {
+			profile.exit();
+		}
+	}
+
+	private String renderTextInput(String field, String description, String placeHolder, String value) {
 		// dataInputs++;
 		String title = field;
 		String id = createId(title);
-		WebComponent component = new WebComponent("{" + getInput(field) + " " + title + "}");
+		WebComponent component = new WebComponent("{" + getInput(field) + " " + title + "}",
+				context.getXmlDocuments());
 		String result = resolveData(id, component,
-				fillMetaData(templateFinder.getTemplate(component.getType(), component.getReplacements()), quote(id),
-						title).replaceAll("\\$\\{description\\}", quote(description))
+				fillMetaData(template(component.getType(), component.getReplacements()),
+						quote(idText(id)), title).replaceAll("\\$\\{description\\}", quote(description))
 								.replaceAll("\\$\\{placeholder\\}", quote(placeHolder))
 								.replaceAll("\\$\\{value\\}", quote(value)));
 		return removeVariablesNotReplaced(result);
@@ -211,14 +491,22 @@ public class WebArtifact {
 		String content = "";
 		for (String parameter : component.getParameters()) {
 			WebComponent parameterComponent = WebComponent.toWebComponent(parameter);
-			String name = parameterComponent == null ? parameter : parameterComponent.getTitle();
 			Map<String, String> replacements = parameterComponent == null ? null : parameterComponent.getReplacements();
-			content += generateComponentItem(itemTemplate + parameterSuffix(parameter), parameterName(name),
-					replacements, false);
+			content += generateComponentItem(itemTemplate + parameterSuffix(parameter),
+					parameterName(parameterTitle(parameter)), replacements, false);
 		}
 		return rowTemplate.replaceAll(CONTENT_REGEX, Matcher.quoteReplacement(content));
 	}
 
+	/**
+	 * The title of a component parameter, which may itself be written as a
+	 * component, such as <code>((class=right) Price)</code>.
+	 */
+	private static String parameterTitle(String parameter) {
+		WebComponent component = WebComponent.toWebComponent(parameter);
+		return component == null ? parameter : component.getTitle();
+	}
+
 	private String parameterName(String parameter) {
 		return parameter.replaceAll(PARAMETER_SUFFIX_REGEX, "");
 	}
@@ -230,60 +518,97 @@ public class WebArtifact {
 
 	private String buildComponentData(String itemTemplate, String id, WebComponent component, String rowTemplate) {
 		dataOutputs += Math.max(1, component.getParameters().length);
-		if (data == null)
+		if (getData() == null)
 			return "";
-		String content = "";
-		XPath xpath = XPathFactory.newInstance().newXPath();
+		if (profile == null)
+			return renderComponentData(itemTemplate, id, component, rowTemplate);
+		profile.enter("rows " + itemTemplate);
 		try {
-			NodeList rows = dataRows(id, component, xpath);
-			String separator = "";
-			for (int i = 0; i < rows.getLength(); i++) {
-				String rowContent = "";
-				for (Node dataField : getDataFields(component.getParameters(), xpath, rows.item(i)))
-					rowContent += generateComponentItem(itemTemplate, dataField);
-				content += separator + rowTemplate.replaceAll(CONTENT_REGEX, Matcher.quoteReplacement(rowContent));
-				separator = LINE_BREAK;
-			}
-		} catch (XPathExpressionException e) {
-			throw new IllegalArgumentException(e);
+			return renderComponentData(itemTemplate, id, component, rowTemplate);
+		} finally {
+			profile.exit();
+		}
+	}
+
+	private String renderComponentData(String itemTemplate, String id, WebComponent component, String rowTemplate) {
+		DataRows dataRows = dataRows(id, component);
+		WebData source = dataRows.source;
+		int[] rows = dataRows.nodes;
+		if (profile != null) {
+			profile.templateLookup();
+			profile.dataRows(rows.length);
+		}
+		WebRowPlan plan = context.getRowPlan(itemTemplate, rowTemplate, component.getParameters());
+		if (plan.isCompiled())
+			return plan.render(source, rows, this);
+		List<Map<String, String>> fieldReplacements = getFieldReplacements(component.getParameters());
+		int[][] dataFields = getDataFields(component.getParameters(), source, rows);
+		String content = "";
+		String separator = "";
+		for (int i = 0; i < rows.length; i++) {
+			String rowContent = "";
+			for (int j = 0; j < dataFields[i].length; j++)
+				rowContent += generateComponentItem(
+						j < component.getParameters().length
+								? dataItemTemplate(itemTemplate, component.getParameters()[j]) : itemTemplate,
+						source, dataFields[i][j], j < fieldReplacements.size() ? fieldReplacements.get(j) : null);
+			content += separator + rowTemplate.replaceAll(CONTENT_REGEX, Matcher.quoteReplacement(rowContent));
+			separator = LINE_BREAK;
 		}
 		return content;
 	}
 
-	private Node[] getDataFields(String[] fields, XPath xpath, Node dataItem) throws XPathExpressionException {
-		if (fields.length == 0)
-			return new Node[] { dataItem };
-		Node[] cells = new Node[fields.length];
-		for (int i = 0; i < cells.length; i++) {
-			WebComponent component = WebComponent.toWebComponent(fields[i]);
-			String fieldName = component == null ? fields[i] : component.getTitle();
-			Map<String, String> replacements = component == null ? null : component.getReplacements();
-			cells[i] = (Node) xpath.compile(textUtil.standardId(parameterName(fieldName))).evaluate(dataItem,
-					XPathConstants.NODE);
-			if (replacements != null && cells[i] != null)
-				cells[i].setUserData("replacements", replacements, null);
+	/**
+	 * The template of the data items of a field: the linked variant of the
+	 * item template, such as <code>tablebodycell-link</code>, for a field
+	 * marked as <code>Field::link</code>, which links each item to the detail
+	 * page named after it.
+	 */
+	protected static String dataItemTemplate(String itemTemplate, String field) {
+		return parameterTitle(field).matches(LINK_SUFFIX_REGEX) ? itemTemplate + LINK_TEMPLATE_SUFFIX : itemTemplate;
+	}
+
+	private List<Map<String, String>> getFieldReplacements(String[] fields) {
+		List<Map<String, String>> result = new ArrayList<Map<String, String>>();
+		for (String field : fields) {
+			WebComponent component = WebComponent.toWebComponent(field);
+			result.add(component == null ? null : component.getReplacements());
 		}
-		return cells;
+		return result;
 	}
 
-	private String generateComponentItem(String templateName, Node dataField) throws XPathExpressionException {
-		@SuppressWarnings("unchecked")
-		Map<String, String> replacements = dataField == null ? null
-				: (Map<String, String>) dataField.getUserData("replacements");
-		String content = generateComponentItem(templateName, dataField == null ? "" : dataField.getTextContent(),
-				replacements, true);
+	private int[][] getDataFields(String[] fields, WebData source, int[] rows) {
+		if (fields.length == 0) {
+			int[][] cells = new int[rows.length][];
+			for (int i = 0; i < rows.length; i++)
+				cells[i] = new int[] { rows[i] };
+			return cells;
+		}
+		String[] fieldNames = new String[fields.length];
+		for (int i = 0; i < fields.length; i++)
+			fieldNames[i] = textUtil.standardId(parameterName(parameterTitle(fields[i])));
+		return source.fields(rows, fieldNames);
+	}
+
+	private String generateComponentItem(String templateName, WebData source, int dataField,
+			Map<String, String> replacements) {
+		boolean found = dataField != WebData.NONE;
+		if (template(templateName, null).contains(TITLE_PLACE))
+			indexText(source.textContent(dataField));
+		String content = generateComponentItem(templateName, source.textContent(dataField),
+				found ? replacements : null, true);
 		for (String attributeName : attributeRefs(content))
 			content = content.replaceAll("\\s*\\$\\{attribute:" + attributeName + "\\}",
-					Matcher.quoteReplacement(attribute(dataField, attributeName)));
+					Matcher.quoteReplacement(source.attribute(dataField, attributeName)));
 		for (String elementName : elementRefs(content))
 			content = content.replaceAll("\\$\\{element:" + elementName + "\\}",
-					Matcher.quoteReplacement(element(dataField, elementName)));
+					Matcher.quoteReplacement(source.element(dataField, elementName)));
 		return content;
 	}
 
 	private String generateComponentItem(String templateName, String title, Map<String, String> replacements,
 			boolean additiveReplacement) {
-		String content = fillMetaData(templateFinder.getTemplate(templateName, null), null, title);
+		String content = fillMetaData(template(templateName, null), null, title);
 		for (String attributeName : attributeRefs(content)) {
 			String suffix = additiveReplacement ? " ${attribute:" + attributeName + "}" : "";
 			content = content.replaceAll("\\s*\\$\\{attribute:" + attributeName + "\\}",
@@ -311,7 +636,7 @@ public class WebArtifact {
 	private String fillMetaData(String text, String id, String title) {
 		String content = text;
 		if (content.contains(ID_PLACE))
-			content = content.replace(ID_PLACE, id == null ? createId(title) : id);
+			content = content.replace(ID_PLACE, id == null ? idText(createId(title)) : id);
 		if (content.contains(NAME_PLACE))
 			content = content.replace(NAME_PLACE, textUtil.standardId(title));
 		if (content.contains(TITLE_PLACE))
@@ -319,31 +644,40 @@ public class WebArtifact {
 		return content;
 	}
 
-	private NodeList dataRows(String id, WebComponent component, XPath xpath) throws XPathExpressionException {
+	/**
+	 * Looks up the rows of a component by its id, then by its title, first in
+	 * the own data context of this artifact, then in the default one.
+	 */
+	private DataRows dataRows(String id, WebComponent component) {
 		boolean checkTitle = !component.getTitle().isEmpty() && !id.equals(textUtil.standardId(component.getTitle()));
-		NodeList rows = dataRows(getTitle(), id, component, xpath);
-		if (rows.getLength() == 0 && checkTitle)
-			rows = dataRows(getTitle(), component.getTitle(), component, xpath);
-		if (rows.getLength() == 0)
-			rows = dataRows(DEFAULT_DATA_CONTEXT, id, component, xpath);
-		if (rows.getLength() == 0 && checkTitle)
-			rows = dataRows(DEFAULT_DATA_CONTEXT, component.getTitle(), component, xpath);
+		DataRows rows = dataRows(true, id, true, component);
+		if (rows.nodes.length == 0 && checkTitle)
+			rows = dataRows(true, component.getTitle(), false, component);
+		if (rows.nodes.length == 0)
+			rows = dataRows(false, id, true, component);
+		if (rows.nodes.length == 0 && checkTitle)
+			rows = dataRows(false, component.getTitle(), false, component);
 		return rows;
 	}
 
-	private NodeList dataRows(String dataContext, String dataId, WebComponent component, XPath xpath)
-			throws XPathExpressionException {
-		if (component.getXmlData() == null)
-			return (NodeList) xpath
-					.compile("//" + textUtil.standardId(dataContext) + "/" + textUtil.standardId(dataId) + "/*")
-					.evaluate(data, XPathConstants.NODESET);
-		else
-			return (NodeList) xpath.compile("*/*").evaluate(component.getXmlData(), XPathConstants.NODESET);
+	private DataRows dataRows(boolean pageContext, String dataId, boolean allocatedId, WebComponent component) {
+		if (component.getXmlData() != null)
+			return new DataRows(component.getXmlData(), component.getXmlData().rootRows());
+		WebData source = pageContext ? getData() : context.getDefaultData();
+		String dataContext = textUtil.standardId(pageContext ? getTitle() : DEFAULT_DATA_CONTEXT);
+		String id = textUtil.standardId(dataId);
+		int[] rows = source.rows(dataContext, id);
+		if (recording != null)
+			recording.rows(source, pageContext, dataContext, id, allocatedId, rows);
+		if (segment != null)
+			segment.rows(source, pageContext, dataContext, id, allocatedId, rows);
+		return new DataRows(source, rows);
 	}
 
-	private String attribute(Node dataItem, String attributeName) {
-		Node node = attributeNode(dataItem, attributeName);
-		return node == null ? "" : node.getNodeValue();
+	private String template(String templateName, Map<String, String> replacements) {
+		if (profile != null)
+			profile.templateLookup();
+		return context.getTemplate(templateName, replacements);
 	}
 
 	private String attribute(Map<String, String> replacements, String attributeName) {
@@ -352,27 +686,6 @@ public class WebArtifact {
 		return replacements.get(attributeName);
 	}
 
-	private Node attributeNode(Node dataItem, String attributeName) {
-		if (dataItem == null || !dataItem.hasAttributes())
-			return null;
-		return dataItem.getAttributes().getNamedItem(attributeName);
-	}
-
-	private String element(Node dataItem, String elementName) {
-		Node node = elementNode(dataItem, elementName);
-		return node == null ? "" : node.getTextContent();
-	}
-
-	private Node elementNode(Node dataItem, String elementName) {
-		NodeList list = dataItem.getChildNodes();
-		for (int i = 0; i < list.getLength(); i++) {
-			Node node = list.item(i);
-			if (node.getNodeType() == Node.ELEMENT_NODE && node.getNodeName().equals(elementName))
-				return node;
-		}
-		return null;
-	}
-
 	private String getDescription(String field) {
 		return behavior(field, PROP_DESCRIPTION, "");
 	}
@@ -386,37 +699,25 @@ public class WebArtifact {
 	}
 
 	private String behavior(String field, String property, String defaultValue) {
-		String value = dataBehavior.get(resolveField(field.toLowerCase()) + ":" + property);
-		return value == null ? defaultValue : value;
-	}
-
-	private String resolveField(String field) {
-		if (dataAlias.containsKey(field))
-			return resolveField(dataAlias.get(field));
-		return field;
+		return context.behavior(field, property, defaultValue);
 	}
 
 	private String pushContext(String id) {
-		String newPlace = "${content" + id + "}";
-		parentContext.push(newPlace);
-		return newPlace;
+		parentContext.push("${content" + (segment == null ? id : segment.marker(id)) + "}");
+		return "${content" + idText(id) + "}";
 	}
 
 	protected String createId(String context) {
-		String id = textUtil.standardId(context);
-		if (components.contains(id)) {
-			int seq = 1;
-			while (components.contains(id + "_" + seq))
-				seq++;
-			id += "_" + seq;
-		}
-		components.add(id);
-		return id;
+		return allocateId(textUtil.standardId(context));
 	}
 
 	protected String createId(WebComponent component) {
-		String id = textUtil
-				.standardId(component.getTitle().isEmpty() ? "_" + component.getType() : component.getTitle());
+		return allocateId(
+				textUtil.standardId(component.getTitle().isEmpty() ? "_" + component.getType() : component.getTitle()));
+	}
+
+	private String allocateId(String base) {
+		String id = base;
 		if (components.contains(id)) {
 			int seq = 1;
 			while (components.contains(id + "_" + seq))
@@ -424,9 +725,38 @@ public class WebArtifact {
 			id += "_" + seq;
 		}
 		components.add(id);
+		if (recording != null)
+			recording.allocated(base, id);
+		if (segment != null)
+			segment.allocated(base, id);
 		return id;
 	}
 
+	/**
+	 * Adds a rendered text to the texts to be indexed for search.
+	 */
+	protected void indexText(String text) {
+		if (text.isEmpty())
+			return;
+		searchTexts.add(text);
+		if (recording != null)
+			recording.indexed(text);
+	}
+
+	/**
+	 * Allocates the id of a data item, returning the text standing for it.
+	 */
+	protected String createItemId(String title) {
+		return idText(createId(title));
+	}
+
+	/**
+	 * The text standing for an id inside the content being rendered.
+	 */
+	private String idText(String id) {
+		return recording == null ? id : recording.marker(id);
+	}
+
 	private String quote(String text) {
 		return text.replaceAll("\"", "&quot;");
 	}
@@ -460,4 +790,17 @@ public class WebArtifact {
 				setContent(result.replaceAll(HEADER_ELEMENTS_REGEX, "<head>" + consolidated + "</head>" + LINE_BREAK));
 		}
 	}
+
+	/**
+	 * Rows looked up for a component, along with the data holding them.
+	 */
+	private static class DataRows {
+		private final WebData source;
+		private final int[] nodes;
+
+		private DataRows(WebData source, int[] nodes) {
+			this.source = source;
+			this.nodes = nodes;
+		}
+	}
 }
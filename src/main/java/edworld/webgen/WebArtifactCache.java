@@ -0,0 +1,130 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+
+import edworld.util.TaskUtil;
+
+/**
+ * Size-bounded cache of generated web artifacts, indexed by file name and
+ * evicting the least recently used artifact when full. Artifacts are generated
+ * outside the lock of the cache, each one once even if requested by many
+ * threads at the same time.
+ */
+public class WebArtifactCache {
+	protected static TaskUtil taskUtil = new TaskUtil();
+
+	private int capacity;
+	private Map<String, WebArtifact> artifacts;
+	private Map<String, FutureTask<WebArtifact>> generations = new ConcurrentHashMap<String,
+			FutureTask<WebArtifact>>();
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of artifacts kept by this cache
+	 */
+	public WebArtifactCache(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+		this.capacity = capacity;
+		artifacts = new LinkedHashMap<String, WebArtifact>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, WebArtifact> eldest) {
+				return size() > WebArtifactCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached artifact having the given file name, generating it
+	 * through the web interface when absent. A thread requesting an artifact
+	 * being generated by another thread waits for it.
+	 * 
+	 * @return the artifact or <code>null</code> if the web interface declares
+	 *         no page with such file name
+	 */
+	public WebArtifact getArtifact(final String fileName, final WebInterface webInterface) {
+		WebArtifact artifact = cached(fileName);
+		if (artifact != null)
+			return artifact;
+		FutureTask<WebArtifact> generation = new FutureTask<WebArtifact>(new Callable<WebArtifact>() {
+			@Override
+			public WebArtifact call() {
+				return generate(fileName, webInterface);
+			}
+		});
+		FutureTask<WebArtifact> current = generations.putIfAbsent(fileName, generation);
+		if (current != null) {
+			synchronized (this) {
+				hits++;
+			}
+			return taskUtil.result(current);
+		}
+		try {
+			return taskUtil.result(generation);
+		} finally {
+			generations.remove(fileName, generation);
+		}
+	}
+
+	private WebArtifact generate(String fileName, WebInterface webInterface) {
+		// cached by a generation which ended after the first lookup
+		WebArtifact artifact = cached(fileName);
+		if (artifact != null)
+			return artifact;
+		synchronized (this) {
+			misses++;
+		}
+		artifact = webInterface.generateArtifact(fileName);
+		if (artifact != null)
+			synchronized (this) {
+				artifacts.put(fileName, artifact);
+			}
+		return artifact;
+	}
+
+	private synchronized WebArtifact cached(String fileName) {
+		WebArtifact artifact = artifacts.get(fileName);
+		if (artifact != null)
+			hits++;
+		return artifact;
+	}
+
+	public synchronized void clear() {
+		artifacts.clear();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized int getSize() {
+		return artifacts.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized double getHitRate() {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("size=%d/%d hits=%d misses=%d hitRate=%.2f", artifacts.size(), capacity, hits, misses,
+				getHitRate());
+	}
+}
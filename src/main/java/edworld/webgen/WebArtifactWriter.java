@@ -0,0 +1,192 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes web artifacts into a directory on a bounded background queue, so that
+ * writing overlaps with the generation of the next artifacts. Files whose
+ * content did not change are left untouched, the others are replaced
+ * atomically through a temporary file. The names of the written files are
+ * kept in a manifest, for detecting the files removed since the previous
+ * writing into the same directory.
+ */
+public class WebArtifactWriter {
+	protected static final String LINE_BREAK = System.getProperty("line.separator");
+	protected static final int QUEUE_CAPACITY = 64;
+
+	private File dir;
+	private File manifest;
+	private String charSet;
+	private ThreadPoolExecutor executor;
+	private List<Future<Change>> pending = new ArrayList<Future<Change>>();
+
+	/**
+	 * @param dir
+	 *            the output directory, created if needed
+	 * @param manifestName
+	 *            name of the file, inside the output directory, listing the
+	 *            files written by this writer, or <code>null</code> for leaving
+	 *            any other file in the directory untouched
+	 * @param charSet
+	 *            the encoding of the written files
+	 */
+	public WebArtifactWriter(File dir, String manifestName, String charSet) {
+		this.dir = dir;
+		this.manifest = manifestName == null ? null : new File(dir, manifestName);
+		this.charSet = charSet;
+		dir.mkdirs();
+		executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * Queues the writing of an artifact, or writes it in the calling thread if
+	 * the queue is full.
+	 */
+	public void write(WebArtifact artifact) {
+		write(artifact.getFileName(), artifact.getContent());
+	}
+
+	/**
+	 * Queues the writing of a file other than an artifact, such as a search
+	 * index file.
+	 * 
+	 * @param fileName
+	 *            the file name, relative to the output directory, which may
+	 *            include subdirectories separated by <code>/</code>
+	 */
+	public void write(final String fileName, final String content) {
+		pending.add(executor.submit(new Callable<Change>() {
+			@Override
+			public Change call() throws IOException {
+				return save(fileName, content);
+			}
+		}));
+	}
+
+	/**
+	 * Accounts for a file written into the directory by other means, such as
+	 * another process, so that it is kept and listed in the manifest.
+	 * 
+	 * @param change
+	 *            how the file was saved, as given by
+	 *            {@link WebOutputChanges#getChange(String)}
+	 */
+	public void written(String fileName, String change) {
+		final Change written = new Change(fileName, change);
+		FutureTask<Change> task = new FutureTask<Change>(new Callable<Change>() {
+			@Override
+			public Change call() {
+				return written;
+			}
+		});
+		task.run();
+		pending.add(task);
+	}
+
+	/**
+	 * Waits for all queued writings, deletes the files written previously but
+	 * not by now and updates the manifest.
+	 * 
+	 * @return the files added, changed, unchanged and removed
+	 */
+	public WebOutputChanges finish() throws IOException {
+		WebOutputChanges changes = new WebOutputChanges();
+		Set<String> written = new LinkedHashSet<String>();
+		try {
+			for (Future<Change> future : pending) {
+				Change change = future.get();
+				written.add(change.fileName);
+				changes.add(change.fileName, change.kind);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			shutdown();
+		}
+		if (manifest == null)
+			return changes;
+		for (String fileName : previouslyWritten())
+			if (!written.contains(fileName) && new File(dir, fileName).delete())
+				changes.getRemoved().add(fileName);
+		StringBuilder content = new StringBuilder();
+		for (String fileName : written)
+			content.append(fileName).append(LINE_BREAK);
+		replace(manifest, content.toString().getBytes(charSet));
+		return changes;
+	}
+
+	/**
+	 * Discards the writings still queued.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private List<String> previouslyWritten() throws IOException {
+		if (!manifest.exists())
+			return new ArrayList<String>();
+		return Arrays.asList(new String(Files.readAllBytes(manifest.toPath()), charSet).split("\r\n?|\n"));
+	}
+
+	private Change save(String fileName, String content) throws IOException {
+		File file = new File(dir, fileName);
+		byte[] bytes = content.getBytes(charSet);
+		if (!file.exists()) {
+			replace(file, bytes);
+			return new Change(fileName, WebOutputChanges.ADDED);
+		}
+		if (file.length() == bytes.length && Arrays.equals(bytes, Files.readAllBytes(file.toPath())))
+			return new Change(fileName, WebOutputChanges.UNCHANGED);
+		replace(file, bytes);
+		return new Change(fileName, WebOutputChanges.CHANGED);
+	}
+
+	private void replace(File file, byte[] bytes) throws IOException {
+		file.getParentFile().mkdirs();
+		File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		try {
+			Files.write(temp.toPath(), bytes);
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private static class Change {
+		private String fileName;
+		private String kind;
+
+		private Change(String fileName, String kind) {
+			this.fileName = fileName;
+			this.kind = kind;
+		}
+	}
+}
@@ -6,15 +6,13 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
-
 public class WebComponent {
 	protected static final String COMPONENT_REGEX = ".*?\\{(.+)\\}(.*)";
 	protected static final String PARAMETER_DELIMITER_REGEX = "\\|";
 	protected String type;
-	protected Document xmlData;
+	protected String xmlReference;
+	protected XmlDocumentCache xmlDocuments;
+	protected WebData xmlData;
 	protected Map<String, String> replacements = new HashMap<>();
 	protected String title;
 	protected String[] parameters;
@@ -26,6 +24,17 @@ public class WebComponent {
 	}
 
 	public WebComponent(String line) {
+		this(line, null);
+	}
+
+	/**
+	 * @param xmlDocuments
+	 *            the cache of the documents referenced by
+	 *            <code>(XML=path)</code>, or <code>null</code> for parsing the
+	 *            document of this component on its own
+	 */
+	public WebComponent(String line, XmlDocumentCache xmlDocuments) {
+		this.xmlDocuments = xmlDocuments;
 		Matcher matcher = Pattern.compile(COMPONENT_REGEX).matcher(line);
 		if (matcher.find()) {
 			String[] parts = matcher.group(1).trim().split("[\\(\\)]");
@@ -37,13 +46,10 @@ public class WebComponent {
 				type = parts[0];
 				title = parts.length < 2 ? "" : parts[1];
 			}
-			if (parts.length > 1 && parts[1].startsWith("XML="))
-				try {
-					xmlData = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(parts[1].substring(4));
-					parts[1] = "";
-				} catch (Exception e) {
-					throw new IllegalArgumentException(e);
-				}
+			if (parts.length > 1 && parts[1].startsWith("XML=")) {
+				xmlReference = parts[1].substring(4);
+				parts[1] = "";
+			}
 			for (int i = 1; i < parts.length; i++)
 				if (parts[i].contains("=")) {
 					String[] definitionParts = parts[i].split("=", 2);
@@ -68,7 +74,13 @@ public class WebComponent {
 		return type;
 	}
 
-	public Document getXmlData() {
+	/**
+	 * @return the document referenced by <code>(XML=path)</code>, read on
+	 *         first use, or <code>null</code> if none is referenced
+	 */
+	public WebData getXmlData() {
+		if (xmlData == null && xmlReference != null)
+			xmlData = xmlDocuments == null ? WebData.parse(xmlReference) : xmlDocuments.getDocument(xmlReference);
 		return xmlData;
 	}
 
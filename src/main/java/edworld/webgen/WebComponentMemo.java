@@ -0,0 +1,300 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Size-bounded memo of rendered components, shared by all artifacts generated
+ * from a context. A rendered component is kept with markers in place of the
+ * ids it allocated, along with every data lookup it made. Another occurrence of
+ * the same component reuses it when the same lookups, done with the ids
+ * allocated on its own page, give the same results.
+ */
+public class WebComponentMemo {
+	protected static final char MARKER_START = '\u0001';
+	protected static final char MARKER_END = '\u0002';
+
+	private int capacity;
+	private Map<Key, Entry> entries;
+	private long hits;
+	private long misses;
+
+	public WebComponentMemo(int capacity) {
+		this.capacity = capacity;
+		entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > WebComponentMemo.this.capacity;
+			}
+		};
+	}
+
+	public synchronized Entry get(Key key) {
+		return entries.get(key);
+	}
+
+	public synchronized void put(Key key, Entry entry) {
+		entries.put(key, entry);
+	}
+
+	public synchronized void hit() {
+		hits++;
+	}
+
+	public synchronized void miss() {
+		misses++;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("size=%d/%d hits=%d misses=%d", entries.size(), capacity, hits, misses);
+	}
+
+	/**
+	 * Identifies a component by its type, title, replacements, parameters and
+	 * XML data source.
+	 */
+	public static class Key {
+		private String text;
+		private WebData xmlData;
+
+		public Key(WebComponent component) {
+			StringBuilder result = new StringBuilder(component.getType()).append('\u0000')
+					.append(component.getTitle()).append('\u0000')
+					.append(new TreeMap<String, String>(component.getReplacements()));
+			for (String parameter : component.getParameters())
+				result.append('\u0000').append(parameter);
+			text = result.toString();
+			xmlData = component.getXmlData();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && ((Key) other).text.equals(text) && ((Key) other).xmlData == xmlData;
+		}
+
+		@Override
+		public int hashCode() {
+			return text.hashCode();
+		}
+	}
+
+	/**
+	 * Records the ids allocated, the data looked up and the text indexed for
+	 * search while rendering a component.
+	 */
+	public static class Recording {
+		private List<String> idBases = new ArrayList<String>();
+		private List<String> ids = new ArrayList<String>();
+		private Map<String, Integer> idIndex = new HashMap<String, Integer>();
+		private List<Lookup> lookups = new ArrayList<Lookup>();
+		private List<String> searchTexts = new ArrayList<String>();
+
+		public void allocated(String base, String id) {
+			idIndex.put(id, ids.size());
+			idBases.add(base);
+			ids.add(id);
+		}
+
+		/**
+		 * @return the marker standing for an id allocated during the recording
+		 */
+		public String marker(String id) {
+			Integer index = idIndex.get(id);
+			return index == null ? id : MARKER_START + index.toString() + MARKER_END;
+		}
+
+		public void rows(WebData source, boolean pageContext, String context, String id, boolean allocatedId,
+				int[] result) {
+			lookups.add(new Lookup(source, true, pageContext, context, allocatedId ? indexOf(id) : -1, id, result));
+		}
+
+		public void text(WebData source, boolean pageContext, String context, String id, boolean allocatedId,
+				String result) {
+			lookups.add(new Lookup(source, false, pageContext, context, allocatedId ? indexOf(id) : -1, id, result));
+		}
+
+		public void indexed(String text) {
+			searchTexts.add(text);
+		}
+
+		private int indexOf(String id) {
+			Integer index = idIndex.get(id);
+			return index == null ? -1 : index;
+		}
+
+		public String resolve(String fragment) {
+			return WebComponentMemo.resolve(fragment, getIds());
+		}
+
+		/**
+		 * @return the ids allocated during the recording, in order
+		 */
+		public String[] getIds() {
+			return ids.toArray(new String[ids.size()]);
+		}
+
+		public Entry toEntry(String fragment, int dataOutputs) {
+			return new Entry(fragment, idBases.toArray(new String[idBases.size()]),
+					lookups.toArray(new Lookup[lookups.size()]), dataOutputs,
+					searchTexts.toArray(new String[searchTexts.size()]));
+		}
+	}
+
+	/**
+	 * A rendered component with its id markers, the bases of its ids, its data
+	 * lookups, the data outputs it counted and the text it indexed for search.
+	 */
+	public static class Entry {
+		private String fragment;
+		private String[] idBases;
+		private Lookup[] lookups;
+		private int dataOutputs;
+		private String[] searchTexts;
+
+		private Entry(String fragment, String[] idBases, Lookup[] lookups, int dataOutputs, String[] searchTexts) {
+			this.fragment = fragment;
+			this.idBases = idBases;
+			this.lookups = lookups;
+			this.dataOutputs = dataOutputs;
+			this.searchTexts = searchTexts;
+		}
+
+		public String[] getIdBases() {
+			return idBases;
+		}
+
+		public int getDataOutputs() {
+			return dataOutputs;
+		}
+
+		public String[] getSearchTexts() {
+			return searchTexts;
+		}
+
+		/**
+		 * Checks whether the data lookups, done with the given ids on the page
+		 * having the given data, default data and data context, give the recorded
+		 * results.
+		 */
+		public boolean matches(WebData pageData, WebData defaultData, String pageContext, String[] ids) {
+			for (Lookup lookup : lookups)
+				if (!lookup.matches(pageData, defaultData, pageContext, ids))
+					return false;
+			return true;
+		}
+
+		public String resolve(String[] ids) {
+			return WebComponentMemo.resolve(fragment, ids);
+		}
+
+		/**
+		 * Adds the data lookups of this entry, reused with the given ids, to
+		 * another recording.
+		 */
+		public void replay(Recording recording, String[] ids) {
+			for (Lookup lookup : lookups) {
+				String id = lookup.idIndex < 0 ? lookup.id : ids[lookup.idIndex];
+				recording.lookups.add(new Lookup(lookup.source, lookup.rows, lookup.pageContext, lookup.context,
+						lookup.idIndex < 0 ? -1 : recording.indexOf(id), id, lookup.result));
+			}
+		}
+	}
+
+	private static class Lookup {
+		private WebData source;
+		private boolean rows;
+		private boolean pageContext;
+		private String context;
+		private int idIndex;
+		private String id;
+		private Object result;
+
+		private Lookup(WebData source, boolean rows, boolean pageContext, String context, int idIndex, String id,
+				Object result) {
+			this.source = source;
+			this.rows = rows;
+			this.pageContext = pageContext;
+			this.context = context;
+			this.idIndex = idIndex;
+			this.id = id;
+			this.result = result;
+		}
+
+		private boolean matches(WebData pageData, WebData defaultData, String page, String[] ids) {
+			String lookupContext = pageContext ? page : context;
+			String lookupId = idIndex < 0 ? id : ids[idIndex];
+			// lookups in a data context are made in the data of a page or in the
+			// default data, whose rows are comparable only within the same data
+			if (context != null && source != (pageContext ? pageData : defaultData))
+				return false;
+			if (rows)
+				return Arrays.equals((int[]) result, source.rows(lookupContext, lookupId));
+			return result.equals(lookupContext == null ? source.text(lookupId) : source.text(lookupContext, lookupId));
+		}
+	}
+
+	/**
+	 * @return the indexes of the ids whose markers are found in a fragment, in
+	 *         order
+	 */
+	public static int[] markerIndexes(String fragment) {
+		List<Integer> indexes = new ArrayList<Integer>();
+		for (int start = fragment.indexOf(MARKER_START); start >= 0; start = fragment.indexOf(MARKER_START,
+				start + 1))
+			indexes.add(Integer.parseInt(fragment.substring(start + 1, fragment.indexOf(MARKER_END, start))));
+		int[] result = new int[indexes.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = indexes.get(i);
+		return result;
+	}
+
+	/**
+	 * @return the length of a fragment, having the given length and markers,
+	 *         once its markers are replaced by the given ids
+	 */
+	public static int resolvedLength(int length, int[] markerIndexes, String[] ids) {
+		for (int index : markerIndexes)
+			length += ids[index].length() - Integer.toString(index).length() - 2;
+		return length;
+	}
+
+	/**
+	 * Replaces the markers of a fragment by the given ids.
+	 */
+	public static String resolve(String fragment, String[] ids) {
+		int start = fragment.indexOf(MARKER_START);
+		if (start < 0)
+			return fragment;
+		StringBuilder result = new StringBuilder(fragment.length());
+		int end = 0;
+		while (start >= 0) {
+			result.append(fragment, end, start);
+			end = fragment.indexOf(MARKER_END, start);
+			result.append(ids[Integer.parseInt(fragment.substring(start + 1, end))]);
+			end++;
+			start = fragment.indexOf(MARKER_START, end);
+		}
+		return result.append(fragment, end, fragment.length()).toString();
+	}
+}
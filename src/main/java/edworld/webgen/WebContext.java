@@ -0,0 +1,682 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import edworld.util.TaskUtil;
+import edworld.util.TextUtil;
+
+/**
+ * Compiled form of a specification, its data dictionary, its (sample) data and
+ * the templates it uses. A context is immutable after construction, so many
+ * threads may generate web artifacts from the same context concurrently; all
+ * the state of one generation is kept by the {@link WebArtifact} being
+ * generated.
+ */
+public class WebContext {
+	protected static final String PROP_DESCRIPTION = "description";
+	protected static final String LINE_BREAK = System.getProperty("line.separator");
+	protected static final String CHARSET = "UTF-8";
+	protected static final int COMPONENT_MEMO_CAPACITY = 4096;
+	protected static final int PAGE_DATA_CAPACITY = 16;
+	protected static final Pattern HEADING_REGEX = Pattern
+			.compile("(?is)<(h[1-6]|caption|legend)\\b[^>]*>[^<]*\\$\\{title\\}");
+	protected static final Pattern DETAIL_PAGES_REGEX = Pattern
+			.compile("(.*?)\\s*\\(\\s*each\\s*=\\s*([^\\s\\)]+)\\s+key\\s*=\\s*([^\\s\\)]+)\\s*\\)\\s*");
+	protected static TextUtil textUtil = new TextUtil();
+	protected static TaskUtil taskUtil = new TaskUtil();
+
+	private final String defaultLanguage;
+	private final WebTemplateFinder templateFinder;
+	private final boolean customFinder;
+	private final WebRowSource rowSource;
+	private final Map<String, WebData> pageData = new LinkedHashMap<String, WebData>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, WebData> eldest) {
+			return size() > PAGE_DATA_CAPACITY;
+		}
+	};
+	private WebData defaultData;
+	private final List<WebPage> pages;
+	private final Map<String, WebPage> pageIndex;
+	private final List<WebPage> menuPages;
+	private final int menuSize;
+	private final Map<String, String> dataBehavior;
+	private final Map<String, String> dataAlias;
+	private final Map<String, String> templates = new ConcurrentHashMap<String, String>();
+	private final Map<String, Boolean> headingTemplates = new ConcurrentHashMap<String, Boolean>();
+	private final Map<String, WebRowPlan> rowPlans = new ConcurrentHashMap<String, WebRowPlan>();
+	private final WebComponentMemo componentMemo = new WebComponentMemo(COMPONENT_MEMO_CAPACITY);
+	private final XmlDocumentCache xmlDocuments = new XmlDocumentCache();
+	private volatile String autoMenu;
+
+	/**
+	 * @param specification
+	 *            the specification, expressed as wiki text, for generating the
+	 *            web artifacts, optionally composed from fragment files through
+	 *            <code>{{include:path}}</code> lines
+	 * @param dataDictionary
+	 *            optional data dictionary for configuring the behavior of data
+	 *            entry and/or presenting
+	 * @param defaultLanguage
+	 *            the main language in which the web artifacts will be generated
+	 * @param templateFinder
+	 *            a custom finder for locating/overriding built-in templates
+	 * @param data
+	 *            optional (sample) data expressed as XML
+	 */
+	public WebContext(String specification, String dataDictionary, String defaultLanguage,
+			WebTemplateFinder templateFinder, String data) {
+		this(new WebSpecLoader().loadPages(specification),
+				dataDictionary == null ? null : new StringReader(dataDictionary), defaultLanguage, templateFinder,
+				data == null ? null : parseData(data));
+	}
+
+	/**
+	 * Context whose specification and data dictionary are parsed line by line
+	 * while read, each reader being closed after this operation.
+	 * 
+	 * @param specification
+	 *            reader of the specification, expressed as wiki text
+	 * @param dataDictionary
+	 *            optional reader of the data dictionary, expressed as wiki text
+	 * @see #WebContext(String, String, String, WebTemplateFinder, String)
+	 */
+	public WebContext(Reader specification, Reader dataDictionary, String defaultLanguage,
+			WebTemplateFinder templateFinder, String data) {
+		this(new WebSpecLoader().loadPages(specification), dataDictionary, defaultLanguage, templateFinder,
+				data == null ? null : parseData(data));
+	}
+
+	/**
+	 * Context whose data is read from a row source, such as a database, in
+	 * place of XML.
+	 * 
+	 * @param rowSource
+	 *            the source of the data read by the pages
+	 * @see #WebContext(Reader, Reader, String, WebTemplateFinder, String)
+	 */
+	public WebContext(Reader specification, Reader dataDictionary, String defaultLanguage,
+			WebTemplateFinder templateFinder, WebRowSource rowSource) {
+		this(new WebSpecLoader().loadPages(specification), dataDictionary, defaultLanguage, templateFinder,
+				rowSource);
+	}
+
+	/**
+	 * @param definitions
+	 *            the pages declared by the specification, before the detail
+	 *            pages are expanded
+	 */
+	protected WebContext(List<WebPage> definitions, Reader dataDictionary, String defaultLanguage,
+			WebTemplateFinder templateFinder, WebRowSource rowSource) {
+		this(definitions, new HashMap<String, String>(), new HashMap<String, String>(), dataDictionary,
+				defaultLanguage, templateFinder, rowSource);
+	}
+
+	private WebContext(List<WebPage> definitions, Map<String, String> behavior, Map<String, String> alias,
+			Reader dataDictionary, String defaultLanguage, WebTemplateFinder templateFinder,
+			WebRowSource rowSource) {
+		this(definitions, loadDataBehavior(dataDictionary, behavior, alias), alias,
+				Collections.<String, String> emptyMap(), defaultLanguage, templateFinder, rowSource);
+	}
+
+	/**
+	 * Context restored from its compiled state.
+	 * 
+	 * @param dataBehavior
+	 *            the behavior of the data fields, by field and property
+	 * @param dataAlias
+	 *            the fields whose behavior is the one of another field
+	 * @param templates
+	 *            the templates already loaded, by name and extension
+	 * @see WebContextSnapshot
+	 */
+	protected WebContext(List<WebPage> definitions, Map<String, String> dataBehavior,
+			Map<String, String> dataAlias, Map<String, String> templates, String defaultLanguage,
+			WebTemplateFinder templateFinder, WebRowSource rowSource) {
+		this(expandDetailPages(definitions, rowSource), null, 0, dataBehavior, dataAlias, templates,
+				defaultLanguage, templateFinder, rowSource);
+	}
+
+	/**
+	 * Context of a shard of the pages of another context, generated apart from
+	 * it with the data read by those pages only.
+	 * 
+	 * @param pages
+	 *            the pages of the shard, detail pages already expanded
+	 * @param autoMenu
+	 *            the automatic menu of the other context, as given by
+	 *            {@link #getAutoMenu()}
+	 * @param menuSize
+	 *            the number of pages listed by the automatic menu
+	 * @see WebShardWorker
+	 */
+	protected WebContext(List<WebPage> pages, String autoMenu, int menuSize, Map<String, String> dataBehavior,
+			Map<String, String> dataAlias, String defaultLanguage, WebTemplateFinder templateFinder,
+			WebRowSource rowSource) {
+		this(pages, autoMenu, menuSize, dataBehavior, dataAlias, Collections.<String, String> emptyMap(),
+				defaultLanguage, templateFinder, rowSource);
+	}
+
+	private WebContext(List<WebPage> pages, String autoMenu, int menuSize, Map<String, String> dataBehavior,
+			Map<String, String> dataAlias, Map<String, String> templates, String defaultLanguage,
+			WebTemplateFinder templateFinder, WebRowSource rowSource) {
+		this.defaultLanguage = defaultLanguage;
+		this.templateFinder = templateFinder;
+		this.customFinder = templateFinder != null && overridesGetTemplate(templateFinder);
+		this.rowSource = rowSource;
+		this.pages = Collections.unmodifiableList(pages);
+		this.pageIndex = Collections.unmodifiableMap(indexPages(pages));
+		this.menuPages = autoMenu == null ? menuPages(pages) : Collections.<WebPage> emptyList();
+		this.menuSize = autoMenu == null ? menuPages.size() : menuSize;
+		this.autoMenu = autoMenu;
+		this.dataBehavior = Collections.unmodifiableMap(dataBehavior);
+		this.dataAlias = Collections.unmodifiableMap(dataAlias);
+		this.templates.putAll(templates);
+	}
+
+	protected static WebData parseData(String data) {
+		try {
+			return WebData.parse(new ByteArrayInputStream(StringEscapeUtils.unescapeHtml4(data).getBytes(CHARSET)));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Replaces each page definition, titled as
+	 * <code>Title (each=context/id key=field)</code>, by a detail page per row
+	 * of the data collection <code>//context/id</code>, named after the
+	 * standard id of the key field of the row.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there is no data for detail pages, or if the key of a row
+	 *             is missing or names the file of another page
+	 */
+	private static List<WebPage> expandDetailPages(List<WebPage> pages, WebRowSource rowSource) {
+		Set<String> fileNames = new HashSet<String>();
+		for (WebPage page : pages)
+			if (!isDetailDefinition(page))
+				fileNames.add(page.getFileName());
+		List<WebPage> result = new ArrayList<WebPage>();
+		for (WebPage page : pages) {
+			Matcher matcher = DETAIL_PAGES_REGEX.matcher(page.getTitle());
+			if (!matcher.matches()) {
+				result.add(page);
+				continue;
+			}
+			String[] collection = matcher.group(2).split("/");
+			if (collection.length != 2)
+				throw new IllegalArgumentException("Invalid data collection of detail pages: " + matcher.group(2));
+			if (rowSource == null)
+				throw new IllegalArgumentException("No data for the detail pages of " + matcher.group(2));
+			WebData data = rowSource.read(textUtil.standardId(collection[0]));
+			int key = data.nameIndex(textUtil.standardId(matcher.group(3)));
+			for (int row : data.rows(textUtil.standardId(collection[0]), textUtil.standardId(collection[1]))) {
+				String keyValue = data.textContent(data.field(row, key));
+				if (keyValue.trim().isEmpty())
+					throw new IllegalArgumentException(
+							"Missing key " + matcher.group(3) + " in a row of " + matcher.group(2));
+				String fileName = textUtil.standardId(keyValue) + ".html";
+				if (!fileNames.add(fileName))
+					throw new IllegalArgumentException("Key " + keyValue + " of " + matcher.group(2)
+							+ " names the file of another page: " + fileName);
+				result.add(new WebPage(page, WebPage.rowText(matcher.group(1), data, row), fileName, data, row));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Whether a page, as declared by the specification, defines detail pages.
+	 */
+	protected static boolean isDetailDefinition(WebPage page) {
+		return DETAIL_PAGES_REGEX.matcher(page.getTitle()).matches();
+	}
+
+	/**
+	 * @return the pages listed by the automatic menu, i.e. all but the detail
+	 *         pages
+	 */
+	private static List<WebPage> menuPages(List<WebPage> pages) {
+		List<WebPage> result = new ArrayList<WebPage>();
+		for (WebPage page : pages)
+			if (!page.isDetailPage())
+				result.add(page);
+		return result;
+	}
+
+	private static Map<String, WebPage> indexPages(List<WebPage> pages) {
+		Map<String, WebPage> index = new HashMap<String, WebPage>();
+		for (WebPage page : pages)
+			if (!index.containsKey(page.getFileName()))
+				index.put(page.getFileName(), page);
+		return index;
+	}
+
+	/**
+	 * Loads the behavior and aliases of the data fields from a data dictionary.
+	 * 
+	 * @return the behavior
+	 */
+	private static Map<String, String> loadDataBehavior(Reader dataDictionary, Map<String, String> behavior,
+			Map<String, String> alias) {
+		if (dataDictionary == null)
+			return behavior;
+		try (BufferedReader reader = new BufferedReader(dataDictionary)) {
+			String currentField = null;
+			for (String line = reader.readLine(); line != null; line = reader.readLine())
+				if (line.matches("\\s*\\*[^\\*].*"))
+					currentField = newField(line, behavior, alias);
+				else if (currentField != null)
+					updateField(currentField, line, behavior);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+		return behavior;
+	}
+
+	private static String newField(String line, Map<String, String> behavior, Map<String, String> alias) {
+		String fieldDefinition = line.substring(line.indexOf('*') + 1).trim();
+		String[] metadata;
+		String field;
+		if (fieldDefinition.contains("=")) {
+			metadata = fieldDefinition.split("=");
+			field = metadata[0].toLowerCase().trim();
+			String sourceField = metadata[1].toLowerCase().trim();
+			if (!resolveField(sourceField, alias).equals(field))
+				alias.put(field, sourceField);
+		} else if (fieldDefinition.contains(":")) {
+			metadata = fieldDefinition.split(":", 2);
+			field = metadata[0].toLowerCase().trim();
+			behavior.put(field + ":" + PROP_DESCRIPTION, metadata[1].trim());
+		} else
+			field = fieldDefinition.toLowerCase().trim();
+		return field;
+	}
+
+	private static void updateField(String field, String line, Map<String, String> behavior) {
+		Matcher matcher = Pattern.compile("\\s*\\*\\*[^\\*]([^:]*):(.*)").matcher(line);
+		if (matcher.find())
+			behavior.put(field + ":" + matcher.group(1).trim(), matcher.group(2).trim());
+	}
+
+	private static String resolveField(String field, Map<String, String> alias) {
+		if (alias.containsKey(field))
+			return resolveField(alias.get(field), alias);
+		return field;
+	}
+
+	/**
+	 * Generates the web artifact of a page declared by the specification.
+	 */
+	public WebArtifact generateArtifact(WebPage page) {
+		return generateArtifact(page, null);
+	}
+
+	/**
+	 * Generates the web artifact of a page declared by the specification,
+	 * attributing the work done for each of its lines to the given profiler.
+	 * 
+	 * @param profiler
+	 *            the profiler or <code>null</code> for no profiling
+	 */
+	public WebArtifact generateArtifact(WebPage page, WebProfiler profiler) {
+		return generateArtifact(page, profiler, null);
+	}
+
+	/**
+	 * Generates the web artifact of a page declared by the specification,
+	 * rendering its top-level sections concurrently. Each section is rendered
+	 * apart and then appended in the order of the page, with the ids it would
+	 * have if all the lines were rendered in order; a section whose data
+	 * lookups depend on the ids allocated by the previous sections is rendered
+	 * again, into the artifact of the page.
+	 * 
+	 * @param executor
+	 *            the executor rendering the sections or <code>null</code> for
+	 *            rendering the lines in order
+	 */
+	public WebArtifact generateArtifact(final WebPage page, final WebProfiler profiler, ExecutorService executor) {
+		WebArtifact artifact = new WebArtifact(page.getTitle(), generateWebPage(page.getTitle()), page.getFileName(),
+				this);
+		WebProfiler.Session profile = profiler == null ? null : profiler.startPage(page);
+		artifact.setProfile(profile);
+		List<Integer> sections = executor == null ? null : sections(page);
+		if (sections == null || sections.size() < 3)
+			renderLines(artifact, page, 0, page.getLines().size(), profile);
+		else {
+			List<FutureTask<WebArtifact>> renderings = new ArrayList<FutureTask<WebArtifact>>();
+			List<WebProfiler.Session> sectionProfiles = new ArrayList<WebProfiler.Session>();
+			for (int i = 1; i < sections.size(); i++) {
+				final int start = sections.get(i - 1);
+				final int end = sections.get(i);
+				final WebProfiler.Session sectionProfile = profiler == null ? null : profiler.startSection(page);
+				FutureTask<WebArtifact> rendering = new FutureTask<WebArtifact>(new Callable<WebArtifact>() {
+					@Override
+					public WebArtifact call() {
+						return renderSection(page, start, end, sectionProfile);
+					}
+				});
+				executor.execute(rendering);
+				renderings.add(rendering);
+				sectionProfiles.add(sectionProfile);
+			}
+			for (int i = 1; i < sections.size(); i++) {
+				WebProfiler.Session sectionProfile = sectionProfiles.get(i - 1);
+				if (artifact.appendSection(taskUtil.result(renderings.get(i - 1)))) {
+					if (sectionProfile != null)
+						sectionProfile.commit();
+				} else {
+					// only the rendering kept in the artifact is profiled
+					if (sectionProfile != null)
+						sectionProfile.discard();
+					renderLines(artifact, page, sections.get(i - 1), sections.get(i), profile);
+				}
+			}
+		}
+		if (profile != null)
+			profile.enterPostProcessing();
+		autoMenu(artifact);
+		artifact.consolidateHeadElements();
+		artifact.removeAllContentPlaces();
+		artifact.removeAllEmptyCaptions();
+		artifact.removeAllEmptyAttributes();
+		if (profile != null)
+			profile.exit();
+		artifact.setProfile(null);
+		return artifact;
+	}
+
+	/**
+	 * @return the index of the first line of each top-level section of a
+	 *         page, followed by the number of lines of the page
+	 */
+	private static List<Integer> sections(WebPage page) {
+		List<String> lines = page.getLines();
+		List<Integer> sections = new ArrayList<Integer>();
+		sections.add(0);
+		for (int i = 1; i < lines.size(); i++)
+			if (WebArtifact.level(lines.get(i)) == 1)
+				sections.add(i);
+		sections.add(lines.size());
+		return sections;
+	}
+
+	private WebArtifact renderSection(WebPage page, int start, int end, WebProfiler.Session profile) {
+		WebArtifact section = new WebArtifact(page.getTitle(), WebArtifact.CONTENT_PLACE, page.getFileName(), this);
+		section.startSection();
+		section.setProfile(profile);
+		renderLines(section, page, start, end, profile);
+		section.setProfile(null);
+		return section;
+	}
+
+	private void renderLines(WebArtifact artifact, WebPage page, int start, int end, WebProfiler.Session profile) {
+		for (int i = start; i < end; i++) {
+			if (profile != null)
+				profile.enterLine(i);
+			artifact.updateArtifact(page.getLine(i));
+			if (profile != null)
+				profile.exit();
+		}
+	}
+
+	/**
+	 * Analyzes a page declared by the specification without rendering it.
+	 * 
+	 * @return an artifact holding the data inputs and outputs of the page, but
+	 *         no content
+	 * @see WebArtifact#analyzeArtifact(String)
+	 */
+	public WebArtifact analyzeArtifact(WebPage page) {
+		WebArtifact artifact = new WebArtifact(page.getTitle(), null, page.getFileName(), this);
+		for (int i = 0; i < page.getLines().size(); i++)
+			artifact.analyzeArtifact(page.getLine(i));
+		return artifact;
+	}
+
+	/**
+	 * Generates the single web artifact whose file name is given, without
+	 * generating any other artifact of the specification.
+	 * 
+	 * @param fileName
+	 *            the file name of the artifact, as returned by
+	 *            {@link WebArtifact#getFileName()}
+	 * @return the generated artifact or <code>null</code> if the specification
+	 *         declares no page with such file name
+	 */
+	public WebArtifact generateArtifact(String fileName) {
+		WebPage page = pageIndex.get(fileName);
+		return page == null ? null : generateArtifact(page);
+	}
+
+	private String generateWebPage(String title) {
+		return getTemplate("web-page", null).replaceAll("\\$\\{lang\\}", defaultLanguage).replaceAll("\\$\\{title\\}",
+				title);
+	}
+
+	private void autoMenu(WebArtifact artifact) {
+		Matcher matcher = Pattern.compile("\\$\\{automenu:menu-item\\}").matcher(artifact.getContent());
+		int menus = 0;
+		while (matcher.find())
+			menus++;
+		if (menus == 0)
+			return;
+		artifact.setMenuEntries(menus * menuSize);
+		artifact.setContent(matcher.replaceAll(Matcher.quoteReplacement(setActiveMenu(getAutoMenu(), artifact))));
+	}
+
+	/**
+	 * @return the items of the automatic menu, listing every page but the
+	 *         detail pages
+	 */
+	protected String getAutoMenu() {
+		if (autoMenu == null) {
+			String menu = "";
+			String separator = "";
+			for (WebPage page : menuPages) {
+				menu += separator + getTemplate("menu-item", null)
+						.replaceAll("\\$\\{url\\}", Matcher.quoteReplacement(page.getFileName()))
+						.replaceAll("\\$\\{title\\}", Matcher.quoteReplacement(page.getTitle()));
+				separator = LINE_BREAK;
+			}
+			autoMenu = menu;
+		}
+		return autoMenu;
+	}
+
+	private String setActiveMenu(String content, WebArtifact artifact) {
+		return content.replace("<li><a href=\"" + artifact.getFileName() + "\">",
+				"<li class=\"active\"><a href=\"" + artifact.getFileName() + "\">");
+	}
+
+	public String getTemplate(String templateName, Map<String, String> replacements) {
+		return getTemplate(templateName, replacements, ".html");
+	}
+
+	/**
+	 * Returns a template located by the template finder, loading it only once
+	 * per context. A finder overriding
+	 * {@link WebTemplateFinder#getTemplate(String, Map, String)} is asked for
+	 * every template, with its replacements.
+	 */
+	public String getTemplate(String templateName, Map<String, String> replacements, String templateExtension) {
+		if (customFinder)
+			return templateFinder.getTemplate(templateName, replacements, templateExtension);
+		String key = templateName + templateExtension;
+		String template = templates.get(key);
+		if (template == null) {
+			template = templateFinder.getTemplate(templateName, null, templateExtension);
+			templates.put(key, template);
+		}
+		return templateFinder.applyReplacements(template, replacements);
+	}
+
+	private static boolean overridesGetTemplate(WebTemplateFinder templateFinder) {
+		try {
+			return templateFinder.getClass().getMethod("getTemplate", String.class, Map.class, String.class)
+					.getDeclaringClass() != WebTemplateFinder.class;
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Whether a component template shows its title as a heading (or caption),
+	 * which is then indexed for search.
+	 */
+	public boolean isHeadingTemplate(String templateName) {
+		Boolean result = headingTemplates.get(templateName);
+		if (result == null) {
+			result = HEADING_REGEX.matcher(getTemplate(templateName, null)).find();
+			headingTemplates.put(templateName, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the plan for rendering data rows through the given item and row
+	 * templates, compiling it only once per context.
+	 */
+	public WebRowPlan getRowPlan(String itemTemplate, String rowTemplate, String[] fields) {
+		StringBuilder key = new StringBuilder(itemTemplate).append('\n').append(rowTemplate);
+		for (String field : fields)
+			key.append('\n').append(field);
+		WebRowPlan plan = rowPlans.get(key.toString());
+		if (plan == null) {
+			String[] itemTemplates = new String[Math.max(1, fields.length)];
+			for (int i = 0; i < itemTemplates.length; i++)
+				itemTemplates[i] = getTemplate(
+						i < fields.length ? WebArtifact.dataItemTemplate(itemTemplate, fields[i]) : itemTemplate, null);
+			plan = new WebRowPlan(itemTemplates, rowTemplate, fields);
+			rowPlans.put(key.toString(), plan);
+		}
+		return plan;
+	}
+
+	public String behavior(String field, String property, String defaultValue) {
+		String value = dataBehavior.get(resolveField(field.toLowerCase(), dataAlias) + ":" + property);
+		return value == null ? defaultValue : value;
+	}
+
+	public WebComponentMemo getComponentMemo() {
+		return componentMemo;
+	}
+
+	/**
+	 * @return the documents referenced by the components of this context
+	 *         through <code>(XML=path)</code>
+	 */
+	public XmlDocumentCache getXmlDocuments() {
+		return xmlDocuments;
+	}
+
+	/**
+	 * @return the number of pages listed by the automatic menu
+	 */
+	protected int getMenuSize() {
+		return menuSize;
+	}
+
+	public List<WebPage> getPages() {
+		return pages;
+	}
+
+	public String getDefaultLanguage() {
+		return defaultLanguage;
+	}
+
+	public WebTemplateFinder getTemplateFinder() {
+		return templateFinder;
+	}
+
+	protected Map<String, String> getDataBehavior() {
+		return dataBehavior;
+	}
+
+	protected Map<String, String> getDataAlias() {
+		return dataAlias;
+	}
+
+	/**
+	 * @return the templates loaded so far, by name and extension
+	 */
+	protected Map<String, String> getLoadedTemplates() {
+		return new HashMap<String, String>(templates);
+	}
+
+	public WebRowSource getRowSource() {
+		return rowSource;
+	}
+
+	/**
+	 * The data of the own context of the pages having the given title, where
+	 * their page lookups are made, while their default lookups are made in
+	 * {@link #getDefaultData()}. The data of the last
+	 * {@value #PAGE_DATA_CAPACITY} contexts read from the row source is kept,
+	 * so that a page and its sections read it once.
+	 * 
+	 * @return the data, the default data if the context has no own data, or
+	 *         <code>null</code> if this context has no row source
+	 */
+	public WebData getData(String title) {
+		if (rowSource == null)
+			return null;
+		String dataContext = textUtil.standardId(title);
+		if (dataContext.equals(defaultContext()))
+			return getDefaultData();
+		synchronized (pageData) {
+			WebData result = pageData.get(dataContext);
+			if (result != null)
+				return result;
+		}
+		WebData own = rowSource.read(dataContext);
+		WebData result = own.getNodeCount() == 0 ? getDefaultData() : own;
+		synchronized (pageData) {
+			WebData previous = pageData.get(dataContext);
+			if (previous != null)
+				return previous;
+			pageData.put(dataContext, result);
+		}
+		return result;
+	}
+
+	/**
+	 * The data of the default context, shared by every page.
+	 * 
+	 * @return the data or <code>null</code> if this context has no row source
+	 */
+	public synchronized WebData getDefaultData() {
+		if (defaultData == null && rowSource != null)
+			defaultData = rowSource.read(defaultContext());
+		return defaultData;
+	}
+
+	private static String defaultContext() {
+		return textUtil.standardId(WebArtifact.DEFAULT_DATA_CONTEXT);
+	}
+}
@@ -0,0 +1,288 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edworld.util.BinaryUtil;
+
+/**
+ * Binary snapshot of the compiled state of a context: the pages declared by the
+ * specification, the behavior and aliases of the data fields, the templates
+ * loaded and the compact form of the XML data. A snapshot saved after a run is
+ * loaded on the next start, reading its file in one go, when the
+ * specification, the fragments it includes, the data dictionary, the language,
+ * the data, the templates directory and the built-in templates it holds are the
+ * same, so that none of them is parsed again.
+ */
+public class WebContextSnapshot {
+	protected static final int MAGIC = 0x57474353;
+	protected static final int VERSION = 2;
+	protected static BinaryUtil binaryUtil = new BinaryUtil();
+
+	private final File file;
+	private WebTemplateFinder templateFinder;
+	private String inputHash;
+	private List<WebPage> definitions;
+	private List<String> includedPaths;
+	private int savedTemplates;
+	private boolean loaded;
+
+	/**
+	 * @param file
+	 *            the file of the snapshot, created when saved
+	 */
+	public WebContextSnapshot(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns the context of the given inputs, loaded from the snapshot if it
+	 * was saved from the same inputs, otherwise created by parsing them.
+	 *
+	 * @see WebContext#WebContext(String, String, String, WebTemplateFinder,
+	 *      String)
+	 * @see #save(WebContext)
+	 */
+	public WebContext getContext(String specification, String dataDictionary, String defaultLanguage,
+			WebTemplateFinder templateFinder, String data) {
+		this.templateFinder = templateFinder;
+		inputHash = inputHash(specification, dataDictionary, defaultLanguage, templateFinder, data);
+		WebContext context = load();
+		loaded = context != null;
+		if (loaded)
+			return context;
+		WebSpecLoader loader = new WebSpecLoader();
+		definitions = loader.loadPages(specification);
+		includedPaths = loader.getIncludedPaths();
+		savedTemplates = -1;
+		return new WebContext(definitions, dataDictionary == null ? null : new StringReader(dataDictionary),
+				defaultLanguage, templateFinder, data == null ? null : WebContext.parseData(data));
+	}
+
+	/**
+	 * Whether the last context was loaded from the snapshot.
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Saves the compiled state of a context returned by
+	 * {@link #getContext(String, String, String, WebTemplateFinder, String)},
+	 * best after generating its artifacts, so that the templates they use are
+	 * saved too. Nothing is written if the context was loaded from the
+	 * snapshot and has loaded no other template since.
+	 */
+	public void save(WebContext context) throws IOException {
+		if (inputHash == null)
+			throw new IllegalArgumentException("No context was returned by this snapshot");
+		if (context.getRowSource() != null && !(context.getRowSource() instanceof WebData))
+			throw new IllegalArgumentException("Only XML data can be saved in a snapshot");
+		Map<String, String> templates = context.getLoadedTemplates();
+		if (templates.size() == savedTemplates)
+			return;
+		// processes sharing the snapshot write their own temporary files
+		File temporary = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(temporary.toPath())))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			binaryUtil.writeText(out, inputHash);
+			out.writeInt(includedPaths.size());
+			for (String path : includedPaths) {
+				binaryUtil.writeText(out, path);
+				binaryUtil.writeText(out, fileHash(new File(path)));
+			}
+			binaryUtil.writeText(out, context.getDefaultLanguage());
+			out.writeInt(definitions.size());
+			for (WebPage page : definitions)
+				writePage(out, page);
+			writeMap(out, context.getDataBehavior());
+			writeMap(out, context.getDataAlias());
+			writeMap(out, templates);
+			binaryUtil.writeText(out, builtInHash(templateFinder, templates.keySet()));
+			out.writeBoolean(context.getRowSource() != null);
+			if (context.getRowSource() != null)
+				((WebData) context.getRowSource()).write(out);
+		} catch (IOException | RuntimeException e) {
+			temporary.delete();
+			throw e;
+		}
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		savedTemplates = templates.size();
+	}
+
+	/**
+	 * @return the context saved in the snapshot, or <code>null</code> if there
+	 *         is no snapshot or if it was saved from other inputs
+	 */
+	private WebContext load() {
+		if (!file.isFile())
+			return null;
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+					|| !inputHash.equals(binaryUtil.readText(buffer)))
+				return null;
+			List<String> paths = new ArrayList<String>();
+			for (int i = buffer.getInt(); i > 0; i--) {
+				String path = binaryUtil.readText(buffer);
+				if (!binaryUtil.readText(buffer).equals(fileHash(new File(path))))
+					return null;
+				paths.add(path);
+			}
+			String defaultLanguage = binaryUtil.readText(buffer);
+			List<WebPage> pages = new ArrayList<WebPage>();
+			for (int i = buffer.getInt(); i > 0; i--)
+				pages.add(readPage(buffer));
+			Map<String, String> dataBehavior = readMap(buffer);
+			Map<String, String> dataAlias = readMap(buffer);
+			Map<String, String> templates = readMap(buffer);
+			if (!builtInHash(templateFinder, templates.keySet()).equals(binaryUtil.readText(buffer)))
+				return null;
+			WebData data = buffer.get() == 0 ? null : WebData.read(buffer);
+			definitions = pages;
+			includedPaths = paths;
+			savedTemplates = templates.size();
+			return new WebContext(pages, dataBehavior, dataAlias, templates, defaultLanguage, templateFinder, data);
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Hash of the inputs of a context, along with the files of its templates
+	 * directory.
+	 */
+	protected static String inputHash(String specification, String dataDictionary, String defaultLanguage,
+			WebTemplateFinder templateFinder, String data) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(new NullOutputStream(), digest))) {
+				out.writeInt(VERSION);
+				for (String text : new String[] { specification, dataDictionary, defaultLanguage, data })
+					binaryUtil.writeText(out, text);
+				File[] templateFiles = templateFinder.templatesDir == null ? null
+						: templateFinder.templatesDir.listFiles();
+				if (templateFiles != null) {
+					Arrays.sort(templateFiles);
+					for (File templateFile : templateFiles)
+						if (templateFile.isFile()) {
+							byte[] bytes = Files.readAllBytes(templateFile.toPath());
+							binaryUtil.writeText(out, templateFile.getName());
+							out.writeInt(bytes.length);
+							out.write(bytes);
+						}
+				}
+			}
+			return new BigInteger(1, digest.digest()).toString(16);
+		} catch (NoSuchAlgorithmException | IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Hash of the built-in templates, as found now on the classpath, of the
+	 * templates loaded by a context, by name and extension.
+	 */
+	protected static String builtInHash(WebTemplateFinder templateFinder, Collection<String> templateKeys) {
+		List<String> keys = new ArrayList<String>(templateKeys);
+		Collections.sort(keys);
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(new NullOutputStream(), digest))) {
+				for (String key : keys) {
+					int dot = key.lastIndexOf('.') < 0 ? key.length() : key.lastIndexOf('.');
+					byte[] bytes = binaryUtil.readBytes(templateFinder.streamFromResourceName(
+							WebTemplateFinder.resourceName(key.substring(0, dot), key.substring(dot))));
+					binaryUtil.writeText(out, key);
+					out.writeInt(bytes == null ? -1 : bytes.length);
+					if (bytes != null)
+						out.write(bytes);
+				}
+			}
+			return new BigInteger(1, digest.digest()).toString(16);
+		} catch (NoSuchAlgorithmException | IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	private static String fileHash(File file) {
+		try {
+			return file.isFile()
+					? new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath())))
+							.toString(16)
+					: "";
+		} catch (NoSuchAlgorithmException | IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	protected static void writePage(DataOutputStream out, WebPage page) throws IOException {
+		binaryUtil.writeText(out, page.getTitle());
+		binaryUtil.writeText(out, page.getFileName());
+		out.writeInt(page.getLines().size());
+		for (int i = 0; i < page.getLines().size(); i++) {
+			binaryUtil.writeText(out, page.getLines().get(i));
+			binaryUtil.writeText(out, page.getLocation(i));
+		}
+	}
+
+	protected static WebPage readPage(ByteBuffer buffer) {
+		String title = binaryUtil.readText(buffer);
+		String fileName = binaryUtil.readText(buffer);
+		int size = buffer.getInt();
+		List<String> lines = new ArrayList<String>(size);
+		List<String> locations = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			lines.add(binaryUtil.readText(buffer));
+			locations.add(binaryUtil.readText(buffer));
+		}
+		return new WebPage(title, fileName, lines, locations);
+	}
+
+	protected static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			binaryUtil.writeText(out, entry.getKey());
+			binaryUtil.writeText(out, entry.getValue());
+		}
+	}
+
+	protected static Map<String, String> readMap(ByteBuffer buffer) {
+		int size = buffer.getInt();
+		Map<String, String> result = new HashMap<String, String>(size * 2);
+		for (int i = 0; i < size; i++)
+			result.put(binaryUtil.readText(buffer), binaryUtil.readText(buffer));
+		return result;
+	}
+
+	private static class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+}
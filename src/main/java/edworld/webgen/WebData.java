@@ -0,0 +1,570 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import edworld.util.BinaryUtil;
+
+/**
+ * Compact, immutable form of XML data. Nodes are kept as rows of parallel int
+ * arrays (name, parent, first child, next sibling, value), every name and text
+ * value is kept once in a string pool, and the elements are indexed by their
+ * parent and own names, so that the collections <code>//context/id</code>
+ * are found without scanning the data. Being immutable, it may be read by
+ * many threads concurrently.
+ */
+public class WebData implements WebRowSource {
+	protected static final int NONE = -1;
+	protected static final int TEXT = -1;
+	private static final int[] NO_NODES = new int[0];
+	private static final SAXParserFactory factory = SAXParserFactory.newInstance();
+	protected static BinaryUtil binaryUtil = new BinaryUtil();
+
+	private final String[] strings;
+	private final Map<String, Integer> names;
+	private final int[] name;
+	private final int[] parent;
+	private final int[] firstChild;
+	private final int[] nextSibling;
+	private final int[] value;
+	private final int[] attributeStart;
+	private final int[] attributeName;
+	private final int[] attributeValue;
+	private final Map<Long, int[]> index;
+
+	private WebData(Builder builder) {
+		strings = builder.strings.toArray(new String[builder.strings.size()]);
+		names = builder.names;
+		int size = builder.size;
+		name = Arrays.copyOf(builder.name, size);
+		parent = Arrays.copyOf(builder.parent, size);
+		firstChild = Arrays.copyOf(builder.firstChild, size);
+		nextSibling = Arrays.copyOf(builder.nextSibling, size);
+		value = Arrays.copyOf(builder.value, size);
+		attributeStart = Arrays.copyOf(builder.attributeStart, size + 1);
+		attributeStart[size] = builder.attributes;
+		attributeName = Arrays.copyOf(builder.attributeName, builder.attributes);
+		attributeValue = Arrays.copyOf(builder.attributeValue, builder.attributes);
+		index = buildIndex();
+	}
+
+	private WebData(String[] strings, int[] name, int[] parent, int[] firstChild, int[] nextSibling, int[] value,
+			int[] attributeStart, int[] attributeName, int[] attributeValue) {
+		this.strings = strings;
+		this.name = name;
+		this.parent = parent;
+		this.firstChild = firstChild;
+		this.nextSibling = nextSibling;
+		this.value = value;
+		this.attributeStart = attributeStart;
+		this.attributeName = attributeName;
+		this.attributeValue = attributeValue;
+		names = new HashMap<String, Integer>();
+		for (int nodeName : name)
+			if (nodeName != TEXT)
+				names.put(strings[nodeName], nodeName);
+		for (int nameIndex : attributeName)
+			names.put(strings[nameIndex], nameIndex);
+		index = buildIndex();
+	}
+
+	/**
+	 * Reads XML data from a stream, without ever building a DOM.
+	 */
+	public static WebData parse(InputStream stream) {
+		try {
+			SAXParser parser;
+			synchronized (factory) {
+				parser = factory.newSAXParser();
+			}
+			Builder builder = new Builder();
+			parser.parse(stream, builder);
+			return new WebData(builder);
+		} catch (Exception e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Reads XML data from a path or URI.
+	 */
+	public static WebData parse(String reference) {
+		try {
+			SAXParser parser;
+			synchronized (factory) {
+				parser = factory.newSAXParser();
+			}
+			Builder builder = new Builder();
+			parser.parse(reference, builder);
+			return new WebData(builder);
+		} catch (Exception e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * XML data holds every data context.
+	 * 
+	 * @return this data
+	 */
+	@Override
+	public WebData read(String context) {
+		return this;
+	}
+
+	/**
+	 * Writes this data in the binary form read by {@link #read(ByteBuffer)}.
+	 */
+	protected void write(DataOutputStream out) throws IOException {
+		out.writeInt(strings.length);
+		for (String text : strings)
+			binaryUtil.writeText(out, text);
+		for (int[] nodes : new int[][] { name, parent, firstChild, nextSibling, value, attributeStart, attributeName,
+				attributeValue })
+			binaryUtil.writeInts(out, nodes);
+	}
+
+	/**
+	 * Reads data from its binary form, indexing it again.
+	 */
+	protected static WebData read(ByteBuffer buffer) {
+		String[] strings = new String[buffer.getInt()];
+		for (int i = 0; i < strings.length; i++)
+			strings[i] = binaryUtil.readText(buffer);
+		return new WebData(strings, binaryUtil.readInts(buffer), binaryUtil.readInts(buffer),
+				binaryUtil.readInts(buffer), binaryUtil.readInts(buffer), binaryUtil.readInts(buffer),
+				binaryUtil.readInts(buffer), binaryUtil.readInts(buffer), binaryUtil.readInts(buffer));
+	}
+
+	private Map<Long, int[]> buildIndex() {
+		Map<Long, List<Integer>> lists = new HashMap<Long, List<Integer>>();
+		for (int node = 0; node < name.length; node++)
+			if (name[node] != TEXT && parent[node] != NONE) {
+				Long key = key(name[parent[node]], name[node]);
+				List<Integer> list = lists.get(key);
+				if (list == null) {
+					list = new ArrayList<Integer>();
+					lists.put(key, list);
+				}
+				list.add(node);
+			}
+		Map<Long, int[]> result = new HashMap<Long, int[]>();
+		for (Map.Entry<Long, List<Integer>> entry : lists.entrySet()) {
+			int[] nodes = new int[entry.getValue().size()];
+			for (int i = 0; i < nodes.length; i++)
+				nodes[i] = entry.getValue().get(i);
+			result.put(entry.getKey(), nodes);
+		}
+		return result;
+	}
+
+	private static Long key(int parentName, int childName) {
+		return ((long) parentName << 32) | (childName & 0xffffffffL);
+	}
+
+	/**
+	 * @return the index of an element or attribute name, or {@link #NONE} if
+	 *         no element or attribute has such name
+	 */
+	public int nameIndex(String text) {
+		Integer result = names.get(text);
+		return result == null ? NONE : result;
+	}
+
+	/**
+	 * Elements named <code>id</code> whose parent is named
+	 * <code>context</code>, in document order.
+	 */
+	protected int[] elements(String context, String id) {
+		int contextName = nameIndex(context);
+		int idName = nameIndex(id);
+		if (contextName == NONE || idName == NONE)
+			return NO_NODES;
+		int[] result = index.get(key(contextName, idName));
+		return result == null ? NO_NODES : result;
+	}
+
+	/**
+	 * The rows of the collection <code>//context/id</code>, i.e. the child
+	 * elements of every element named <code>id</code> whose parent is named
+	 * <code>context</code>.
+	 */
+	public int[] rows(String context, String id) {
+		return childElements(elements(context, id));
+	}
+
+	/**
+	 * The rows of a collection made by the child elements of the root element.
+	 */
+	public int[] rootRows() {
+		return name.length == 0 ? NO_NODES : childElements(new int[] { 0 });
+	}
+
+	private int[] childElements(int[] nodes) {
+		int count = 0;
+		for (int node : nodes)
+			for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+				if (name[child] != TEXT)
+					count++;
+		int[] result = new int[count];
+		count = 0;
+		for (int node : nodes)
+			for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+				if (name[child] != TEXT)
+					result[count++] = child;
+		return result;
+	}
+
+	/**
+	 * The first text found directly inside the elements named <code>id</code>
+	 * whose parent is named <code>context</code>.
+	 */
+	public String text(String context, String id) {
+		return firstText(elements(context, id));
+	}
+
+	/**
+	 * The first text found directly inside the elements named <code>id</code>.
+	 */
+	public String text(String id) {
+		int idName = nameIndex(id);
+		if (idName == NONE)
+			return "";
+		for (int node = 0; node < name.length; node++)
+			if (name[node] == idName) {
+				String text = firstText(new int[] { node });
+				if (!text.isEmpty())
+					return text;
+			}
+		return "";
+	}
+
+	private String firstText(int[] nodes) {
+		for (int node : nodes) {
+			if (value[node] != NONE && !strings[value[node]].isEmpty())
+				return strings[value[node]];
+			for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+				if (name[child] == TEXT)
+					return strings[value[child]];
+		}
+		return "";
+	}
+
+	/**
+	 * The first child element of a node having the given name.
+	 * 
+	 * @return the child element or {@link #NONE}
+	 */
+	public int field(int node, String fieldName) {
+		return field(node, nameIndex(fieldName));
+	}
+
+	/**
+	 * The first child element of a node having the name of the given index.
+	 * 
+	 * @see #nameIndex(String)
+	 */
+	public int field(int node, int fieldIndex) {
+		if (node == NONE || fieldIndex == NONE)
+			return NONE;
+		for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+			if (name[child] == fieldIndex)
+				return child;
+		return NONE;
+	}
+
+	/**
+	 * Finds the fields of many rows at once.
+	 * 
+	 * @return the table of field nodes, one line per row and one column per
+	 *         field, {@link #NONE} marking missing fields
+	 */
+	public int[][] fields(int[] rows, String[] fieldNames) {
+		int[][] result = new int[rows.length][fieldNames.length];
+		for (int i = 0; i < rows.length; i++)
+			for (int j = 0; j < fieldNames.length; j++)
+				result[i][j] = field(rows[i], fieldNames[j]);
+		return result;
+	}
+
+	/**
+	 * All the text inside a node, as in DOM's <code>getTextContent()</code>.
+	 */
+	public String textContent(int node) {
+		if (node == NONE)
+			return "";
+		if (value[node] != NONE)
+			return strings[value[node]];
+		StringBuilder result = new StringBuilder();
+		appendText(node, result);
+		return result.toString();
+	}
+
+	private void appendText(int node, StringBuilder result) {
+		if (value[node] != NONE)
+			result.append(strings[value[node]]);
+		else
+			for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+				appendText(child, result);
+	}
+
+	/**
+	 * @return the value of an attribute of a node, or an empty text if absent
+	 */
+	public String attribute(int node, String attribute) {
+		return attribute(node, nameIndex(attribute));
+	}
+
+	/**
+	 * @return the value of the attribute of a node having the name of the given
+	 *         index, or an empty text if absent
+	 * @see #nameIndex(String)
+	 */
+	public String attribute(int node, int attributeIndex) {
+		if (node == NONE || attributeIndex == NONE)
+			return "";
+		for (int i = attributeStart[node]; i < attributeStart[node + 1]; i++)
+			if (attributeName[i] == attributeIndex)
+				return strings[attributeValue[i]];
+		return "";
+	}
+
+	/**
+	 * @return all the text inside the first child element of a node having the
+	 *         given name, or an empty text if absent
+	 */
+	public String element(int node, String elementName) {
+		return textContent(field(node, elementName));
+	}
+
+	/**
+	 * The part of this data read by the pages of the given data contexts: the
+	 * elements named after them, with all their content, under a root element
+	 * named as the root of this data, so that their collections
+	 * <code>//context/id</code> are found in the slice as in this data.
+	 */
+	public WebData slice(Set<String> contexts) {
+		Builder builder = new Builder();
+		if (name.length > 0 && contexts.contains(strings[name[0]]))
+			copy(0, builder);
+		else if (name.length > 0) {
+			builder.startElement(null, null, strings[name[0]], attributes(0));
+			slice(0, contexts, builder);
+			builder.endElement(null, null, null);
+		}
+		return new WebData(builder);
+	}
+
+	private void slice(int node, Set<String> contexts, Builder builder) {
+		for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+			if (name[child] != TEXT && contexts.contains(strings[name[child]]))
+				copy(child, builder);
+			else if (name[child] != TEXT)
+				slice(child, contexts, builder);
+	}
+
+	/**
+	 * The data made of an element of this data with all its content, such as
+	 * a row read apart from its collection.
+	 */
+	public WebData subtree(int node) {
+		Builder builder = new Builder();
+		copy(node, builder);
+		return new WebData(builder);
+	}
+
+	private void copy(int node, Builder builder) {
+		if (name[node] == TEXT) {
+			builder.characters(strings[value[node]].toCharArray(), 0, strings[value[node]].length());
+			return;
+		}
+		builder.startElement(null, null, strings[name[node]], attributes(node));
+		if (value[node] != NONE)
+			builder.characters(strings[value[node]].toCharArray(), 0, strings[value[node]].length());
+		for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+			copy(child, builder);
+		builder.endElement(null, null, null);
+	}
+
+	private Attributes attributes(int node) {
+		AttributesImpl result = new AttributesImpl();
+		for (int i = attributeStart[node]; i < attributeStart[node + 1]; i++)
+			result.addAttribute("", "", strings[attributeName[i]], "CDATA", strings[attributeValue[i]]);
+		return result;
+	}
+
+	public int getNodeCount() {
+		return name.length;
+	}
+
+	/**
+	 * Estimates the heap used by this data: the node and attribute arrays, the
+	 * index and the pooled strings.
+	 */
+	public long getEstimatedMemory() {
+		long result = 4L * (6 * name.length + 2 * attributeName.length);
+		for (int[] nodes : index.values())
+			result += 64 + 4L * nodes.length;
+		for (String text : strings)
+			result += 40 + 2L * text.length();
+		return result;
+	}
+
+	/**
+	 * Writes data element by element, as read from a source other than XML.
+	 */
+	public static class Writer {
+		private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+		private Builder builder = new Builder();
+		private int depth;
+
+		public Writer startElement(String elementName) {
+			builder.startElement(null, null, elementName, NO_ATTRIBUTES);
+			depth++;
+			return this;
+		}
+
+		public Writer text(String text) {
+			builder.characters(text.toCharArray(), 0, text.length());
+			return this;
+		}
+
+		public Writer endElement() {
+			if (depth == 0)
+				throw new IllegalArgumentException("No element to end");
+			builder.endElement(null, null, null);
+			depth--;
+			return this;
+		}
+
+		/**
+		 * @return the data written, once every element is ended
+		 */
+		public WebData toData() {
+			if (depth != 0)
+				throw new IllegalArgumentException("Elements not ended: " + depth);
+			return new WebData(builder);
+		}
+	}
+
+	private static class Builder extends DefaultHandler {
+		private List<String> strings = new ArrayList<String>();
+		private Map<String, Integer> pool = new HashMap<String, Integer>();
+		private Map<String, Integer> names = new HashMap<String, Integer>();
+		private int size;
+		private int[] name = new int[64];
+		private int[] parent = new int[64];
+		private int[] firstChild = new int[64];
+		private int[] nextSibling = new int[64];
+		private int[] value = new int[64];
+		private int[] attributeStart = new int[65];
+		private int attributes;
+		private int[] attributeName = new int[16];
+		private int[] attributeValue = new int[16];
+		private int[] lastChild = new int[64];
+		private int current = NONE;
+		private StringBuilder text = new StringBuilder();
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes atts) {
+			flushText();
+			int node = addNode(intern(qName, names));
+			attributeStart[node] = attributes;
+			for (int i = 0; i < atts.getLength(); i++) {
+				if (attributes == attributeName.length) {
+					attributeName = Arrays.copyOf(attributeName, attributes * 2);
+					attributeValue = Arrays.copyOf(attributeValue, attributes * 2);
+				}
+				attributeName[attributes] = intern(atts.getQName(i), names);
+				attributeValue[attributes] = intern(atts.getValue(i), pool);
+				attributes++;
+			}
+			current = node;
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			if (firstChild[current] == NONE) {
+				value[current] = intern(text.toString(), pool);
+				text.setLength(0);
+			} else
+				flushText();
+			current = parent[current];
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			text.append(ch, start, length);
+		}
+
+		@Override
+		public void ignorableWhitespace(char[] ch, int start, int length) {
+			text.append(ch, start, length);
+		}
+
+		private void flushText() {
+			if (text.length() == 0 || current == NONE) {
+				text.setLength(0);
+				return;
+			}
+			int node = addNode(TEXT);
+			value[node] = intern(text.toString(), pool);
+			attributeStart[node] = attributes;
+			text.setLength(0);
+		}
+
+		private int addNode(int nodeName) {
+			if (size == name.length) {
+				int capacity = size * 2;
+				name = Arrays.copyOf(name, capacity);
+				parent = Arrays.copyOf(parent, capacity);
+				firstChild = Arrays.copyOf(firstChild, capacity);
+				nextSibling = Arrays.copyOf(nextSibling, capacity);
+				value = Arrays.copyOf(value, capacity);
+				lastChild = Arrays.copyOf(lastChild, capacity);
+				attributeStart = Arrays.copyOf(attributeStart, capacity + 1);
+			}
+			int node = size++;
+			name[node] = nodeName;
+			parent[node] = current;
+			firstChild[node] = NONE;
+			nextSibling[node] = NONE;
+			lastChild[node] = NONE;
+			value[node] = NONE;
+			if (current != NONE) {
+				if (lastChild[current] == NONE)
+					firstChild[current] = node;
+				else
+					nextSibling[lastChild[current]] = node;
+				lastChild[current] = node;
+			}
+			return node;
+		}
+
+		private int intern(String text, Map<String, Integer> map) {
+			Integer result = map.get(text);
+			if (result == null) {
+				result = strings.size();
+				strings.add(text);
+				map.put(text, result);
+			}
+			return result;
+		}
+	}
+}
@@ -1,42 +1,42 @@
 // This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
 package edworld.webgen;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintWriter;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.apache.commons.lang3.StringEscapeUtils;
-import org.w3c.dom.Document;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
+import edworld.util.TaskUtil;
 import edworld.util.TextUtil;
 
 public class WebInterface {
-	protected static final String PROP_DESCRIPTION = "description";
 	protected static final String LINE_BREAK = System.getProperty("line.separator");
+	protected static final String ARTIFACTS_MANIFEST = ".webgen-artifacts";
+	protected static final String REPORTS_MANIFEST = ".webgen-reports";
 	protected static TextUtil textUtil = new TextUtil();
+	protected static TaskUtil taskUtil = new TaskUtil();
 
-	protected String specification;
-	protected String defaultLanguage;
-	protected WebTemplateFinder templateFinder;
-	protected Document data;
+	protected WebContext context;
 	protected String webGenReportTitle = "WebGen report";
 	protected List<WebArtifact> artifacts = new ArrayList<WebArtifact>();
 	protected List<WebArtifact> reports = new ArrayList<WebArtifact>();
-	protected WebArtifact currentArtifact;
-	protected Map<String, String> dataBehavior;
-	protected Map<String, String> dataAlias;
-	protected String currentField;
 	protected String charSet = "UTF-8";
+	protected boolean searchIndexed;
+	protected WebPageBudget budget;
+	protected List<WebPageWeight> pageWeights = new ArrayList<WebPageWeight>();
+	protected boolean weightsPending;
+	protected List<String> budgetWarnings = new ArrayList<String>();
+	protected WebProfiler profiler;
+	protected int threads = 1;
 
 	/**
 	 * WebInterface to be expressed into a set of web artifacts according to the
@@ -57,65 +57,16 @@ public class WebInterface {
 	 */
 	public WebInterface(String specification, String dataDictionary, String defaultLanguage,
 			WebTemplateFinder templateFinder, String data) {
-		this.specification = specification;
-		loadDataBehavior(dataDictionary);
-		this.defaultLanguage = defaultLanguage;
-		this.templateFinder = templateFinder;
-		if (data == null) {
-			this.data = null;
-			return;
-		}
-		try {
-			this.data = DocumentBuilderFactory.newInstance().newDocumentBuilder()
-					.parse(new ByteArrayInputStream(StringEscapeUtils.unescapeHtml4(data).getBytes(charSet)));
-		} catch (Exception e) {
-			throw new IllegalArgumentException(e);
-		}
+		this(new WebContext(specification, dataDictionary, defaultLanguage, templateFinder, data));
 	}
 
-	private void loadDataBehavior(String dataDictionary) {
-		dataBehavior = new HashMap<String, String>();
-		dataAlias = new HashMap<String, String>();
-		if (dataDictionary == null)
-			return;
-		currentField = null;
-		for (String line : getLines(dataDictionary))
-			if (!newField(line) && currentField != null)
-				updateField(currentField, line);
-	}
-
-	private boolean newField(String line) {
-		if (line.matches("\\s*\\*[^\\*].*")) {
-			String fieldDefinition = line.substring(line.indexOf('*') + 1).trim();
-			String[] metadata;
-			if (fieldDefinition.contains("=")) {
-				metadata = fieldDefinition.split("=");
-				currentField = metadata[0].toLowerCase().trim();
-				addDataAlias(currentField, metadata[1].toLowerCase().trim());
-			} else if (fieldDefinition.contains(":")) {
-				metadata = fieldDefinition.split(":", 2);
-				currentField = metadata[0].toLowerCase().trim();
-				addDataBehavior(currentField, PROP_DESCRIPTION, metadata[1].trim());
-			} else
-				currentField = fieldDefinition.toLowerCase().trim();
-			return true;
-		}
-		return false;
-	}
-
-	private void updateField(String field, String line) {
-		Matcher matcher = Pattern.compile("\\s*\\*\\*[^\\*]([^:]*):(.*)").matcher(line);
-		if (matcher.find())
-			addDataBehavior(field, matcher.group(1).trim(), matcher.group(2).trim());
-	}
-
-	private void addDataAlias(String field, String sourceField) {
-		if (!resolveField(sourceField).equals(field))
-			dataAlias.put(field, sourceField);
-	}
-
-	private void addDataBehavior(String field, String property, String value) {
-		dataBehavior.put(field + ":" + property, value);
+	/**
+	 * WebInterface to be expressed into a set of web artifacts according to a
+	 * compiled context, which may be shared with other web interfaces running
+	 * in other threads.
+	 */
+	public WebInterface(WebContext context) {
+		this.context = context;
 	}
 
 	/**
@@ -138,41 +89,164 @@ public class WebInterface {
 	 */
 	public WebInterface(InputStream specificationStream, InputStream dataDicionaryStream, String defaultLanguage,
 			WebTemplateFinder templateFinder, InputStream dataStream) {
-		this(extractText(specificationStream), extractText(dataDicionaryStream), defaultLanguage, templateFinder,
-				extractText(dataStream));
+		this(new WebContext(reader(specificationStream), reader(dataDicionaryStream), defaultLanguage, templateFinder,
+				new TextUtil().extractText(dataStream)));
 	}
 
-	private static String extractText(InputStream stream) {
-		return new TextUtil().extractText(stream);
+	private static Reader reader(InputStream stream) {
+		return stream == null ? null : new InputStreamReader(stream, StandardCharsets.UTF_8);
 	}
 
 	public void generateArtifacts() {
 		artifacts.clear();
-		currentArtifact = null;
-		for (String line : getLines(specification))
-			if (!newArtifact(line) && currentArtifact != null)
-				currentArtifact.updateArtifact(line);
-		autoMenu();
-		for (WebArtifact artifact : artifacts) {
-			artifact.consolidateHeadElements();
-			artifact.removeAllContentPlaces();
-			artifact.removeAllEmptyCaptions();
-			artifact.removeAllEmptyAttributes();
+		clearWeights();
+		List<WebPage> pages = getPages();
+		ExecutorService executor = newExecutor();
+		try {
+			List<FutureTask<WebArtifact>> generation = generate(pages, executor);
+			for (int i = 0; i < pages.size(); i++)
+				artifacts.add(weigh(pages.get(i), taskUtil.result(generation.get(i))));
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+		reports = null;
+	}
+
+	private ExecutorService newExecutor() {
+		return threads < 2 ? null : Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Starts generating the artifacts of the pages, and the sections of each
+	 * page, through the executor, if any; each generation not yet started when
+	 * its result is needed runs in the calling thread.
+	 */
+	private List<FutureTask<WebArtifact>> generate(List<WebPage> pages, final ExecutorService executor) {
+		List<FutureTask<WebArtifact>> generation = new ArrayList<FutureTask<WebArtifact>>();
+		for (final WebPage page : pages) {
+			FutureTask<WebArtifact> task = new FutureTask<WebArtifact>(new Callable<WebArtifact>() {
+				@Override
+				public WebArtifact call() {
+					return generateArtifact(page, executor);
+				}
+			});
+			if (executor != null)
+				executor.execute(task);
+			generation.add(task);
 		}
+		return generation;
+	}
+
+	/**
+	 * Fills the artifacts with the title, file name and data inputs and
+	 * outputs of each page, but no content, much faster than generating them.
+	 * The reports then list the inventory of the specification, with no page
+	 * weights.
+	 */
+	public void analyzeArtifacts() {
+		artifacts.clear();
+		clearWeights();
+		for (WebPage page : getPages())
+			artifacts.add(context.analyzeArtifact(page));
+		reports = null;
+	}
+
+	protected void clearWeights() {
+		pageWeights.clear();
+		budgetWarnings.clear();
+		weightsPending = false;
+	}
+
+	/**
+	 * Records the weight of a generated artifact, checking it against the
+	 * budget. Without a budget, the artifacts are weighed only when their
+	 * weights are needed, by {@link #getPageWeights()} or the reports.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the artifact is over a failing budget
+	 */
+	private WebArtifact weigh(WebPage page, WebArtifact artifact) {
+		if (budget == null)
+			weightsPending = true;
+		else
+			addWeight(new WebPageWeight(page, artifact, charSet));
+		return artifact;
+	}
+
+	/**
+	 * Replaces the artifacts by the ones generated elsewhere, such as by shard
+	 * workers, checking their weights against the budget.
+	 */
+	protected void setArtifacts(List<WebArtifact> generated, List<WebPageWeight> weights) {
+		artifacts.clear();
+		clearWeights();
 		reports = null;
+		artifacts.addAll(generated);
+		for (WebPageWeight weight : weights)
+			addWeight(weight);
+	}
+
+	protected void addWeight(WebPageWeight weight) {
+		pageWeights.add(weight);
+		if (budget == null)
+			return;
+		List<String> violations = budget.violations(weight);
+		if (!violations.isEmpty() && budget.isFailing())
+			throw new IllegalArgumentException(
+					"Page weight budget exceeded by " + weight.getFileName() + ": " + violations);
+		for (String violation : violations)
+			budgetWarnings.add(weight.getFileName() + ": " + violation);
+	}
+
+	/**
+	 * Generates, on demand, the single web artifact whose file name is given,
+	 * without generating any other artifact of the specification.
+	 * 
+	 * @param fileName
+	 *            the file name of the artifact, as returned by
+	 *            {@link WebArtifact#getFileName()}
+	 * @return the generated artifact or <code>null</code> if the specification
+	 *         declares no page with such file name
+	 */
+	public WebArtifact generateArtifact(String fileName) {
+		return context.generateArtifact(fileName);
+	}
+
+	protected WebArtifact generateArtifact(WebPage page) {
+		return generateArtifact(page, null);
+	}
+
+	protected WebArtifact generateArtifact(WebPage page, ExecutorService executor) {
+		return context.generateArtifact(page, profiler, executor);
+	}
+
+	public List<WebPage> getPages() {
+		return context.getPages();
+	}
+
+	public WebContext getContext() {
+		return context;
 	}
 
 	protected void generateReports() {
-		String data = "<" + textUtil.standardId(getWebGenReportTitle()) + ">" + LINE_BREAK;
-		data += buildArtifactTableData() + LINE_BREAK;
-		data += "</" + textUtil.standardId(getWebGenReportTitle()) + ">";
 		WebInterface webReports = new WebInterface(
-				templateFinder.getTemplate("webgen-reporting-specification", null, ".wiki"), null, defaultLanguage,
-				templateFinder, data);
+				context.getTemplate("webgen-reporting-specification", null, ".wiki"), null,
+				context.getDefaultLanguage(), context.getTemplateFinder(), buildReportData());
 		webReports.generateArtifacts();
 		reports = webReports.getArtifacts();
 	}
 
+	/**
+	 * @return the data of the reports, expressed as XML
+	 */
+	protected String buildReportData() {
+		String data = "<" + textUtil.standardId(getWebGenReportTitle()) + ">" + LINE_BREAK;
+		data += buildArtifactTableData() + LINE_BREAK;
+		data += "</" + textUtil.standardId(getWebGenReportTitle()) + ">";
+		return data;
+	}
+
 	private String buildArtifactTableData() {
 		String xml = "<_table>" + LINE_BREAK;
 		for (WebArtifact artifact : artifacts) {
@@ -183,73 +257,141 @@ public class WebInterface {
 			xml += "<data_outputs>" + artifact.getDataOutputs() + "</data_outputs>" + LINE_BREAK;
 			xml += "</artifact>" + LINE_BREAK;
 		}
-		xml += "</_table>";
+		xml += "</_table>" + LINE_BREAK;
+		xml += "<weight_by_page>" + LINE_BREAK;
+		for (WebPageWeight weight : getPageWeights()) {
+			List<String> violations = budget == null ? new ArrayList<String>() : budget.violations(weight);
+			xml += "<weight>" + LINE_BREAK;
+			xml += "<page>" + encodeCharData(addLink(weight.getTitle(), weight.getFileName())) + "</page>" + LINE_BREAK;
+			xml += "<bytes>" + weight.getBytes() + "</bytes>" + LINE_BREAK;
+			xml += "<table_rows>" + weight.getTableRows() + "</table_rows>" + LINE_BREAK;
+			xml += "<inputs>" + weight.getInputs() + "</inputs>" + LINE_BREAK;
+			xml += "<menu_entries>" + weight.getMenuEntries() + "</menu_entries>" + LINE_BREAK;
+			xml += "<largest_components>" + encodeCharData(join(weight.getLargestComponents()))
+					+ "</largest_components>" + LINE_BREAK;
+			xml += "<budget>" + encodeCharData(violations.isEmpty() ? "ok" : join(violations)) + "</budget>"
+					+ LINE_BREAK;
+			xml += "</weight>" + LINE_BREAK;
+		}
+		xml += "</weight_by_page>";
 		return xml;
 	}
 
+	private String join(List<?> items) {
+		String result = "";
+		for (Object item : items)
+			result += (result.isEmpty() ? "" : "<br>") + item;
+		return result;
+	}
+
 	private String addLink(String text, String link) {
 		return "<a href=\"" + link + "\">" + text + "</a>";
 	}
 
-	protected boolean newArtifact(String line) {
-		if (line.matches("\\s*==[^=].*")) {
-			String title = line.replaceAll("==", "").trim();
-			currentArtifact = new WebArtifact(title, generateWebPage(title, defaultLanguage),
-					textUtil.standardId(title) + ".html", dataBehavior, dataAlias, templateFinder, data);
-			artifacts.add(currentArtifact);
-			return true;
+	/**
+	 * Generates the web artifacts while saving them into a directory, each
+	 * artifact being written in background as soon as it is generated.
+	 * 
+	 * @return the files added, changed and removed in the directory
+	 * @see #saveArtifactsToDir(File)
+	 */
+	public WebOutputChanges generateArtifactsToDir(File dir) throws IOException {
+		artifacts.clear();
+		clearWeights();
+		reports = null;
+		WebArtifactWriter writer = new WebArtifactWriter(dir, ARTIFACTS_MANIFEST, charSet);
+		List<WebPage> pages = getPages();
+		ExecutorService executor = newExecutor();
+		try {
+			WebSearchIndex searchIndex = searchIndexed ? new WebSearchIndex() : null;
+			List<FutureTask<WebArtifact>> generation = generate(pages, executor);
+			for (int i = 0; i < pages.size(); i++) {
+				WebArtifact artifact = weigh(pages.get(i), taskUtil.result(generation.get(i)));
+				artifacts.add(artifact);
+				writer.write(artifact);
+				if (searchIndex != null)
+					searchIndex.add(artifact);
+			}
+			writeSearchIndex(searchIndex, writer);
+			return writer.finish();
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+			writer.shutdown();
 		}
-		return false;
 	}
 
-	private String generateWebPage(String title, String lang) {
-		return templateFinder.getTemplate("web-page", null).replaceAll("\\$\\{lang\\}", lang)
-				.replaceAll("\\$\\{title\\}", title);
+	/**
+	 * Saves the generated web artifacts into a directory, rewriting only the
+	 * files whose content changed and deleting the files of artifacts saved
+	 * previously but no longer generated.
+	 * 
+	 * @return the files added, changed and removed in the directory
+	 */
+	public WebOutputChanges saveArtifactsToDir(File dir) throws IOException {
+		return save(artifacts, dir, ARTIFACTS_MANIFEST, searchIndexed ? getSearchIndex() : null);
 	}
 
-	private void autoMenu() {
-		String autoMenu = "";
-		String separator = "";
-		for (WebArtifact artifact : artifacts) {
-			autoMenu += separator + templateFinder.getTemplate("menu-item", null)
-					.replaceAll("\\$\\{url\\}", Matcher.quoteReplacement(artifact.getFileName()))
-					.replaceAll("\\$\\{title\\}", Matcher.quoteReplacement(artifact.getTitle()));
-			separator = LINE_BREAK;
-		}
-		for (WebArtifact artifact : artifacts)
-			artifact.setContent(artifact.getContent().replaceAll("\\$\\{automenu:menu-item\\}",
-					Matcher.quoteReplacement(setActiveMenu(autoMenu, artifact))));
+	public WebOutputChanges saveReportsToDir(File dir) throws IOException {
+		return save(getReports(), dir, REPORTS_MANIFEST, null);
 	}
 
-	private String setActiveMenu(String content, WebArtifact artifact) {
-		return content.replace("<li><a href=\"" + artifact.getFileName() + "\">",
-				"<li class=\"active\"><a href=\"" + artifact.getFileName() + "\">");
+	private WebOutputChanges save(List<WebArtifact> artifacts, File dir, String manifestName,
+			WebSearchIndex searchIndex) throws IOException {
+		WebArtifactWriter writer = new WebArtifactWriter(dir, manifestName, charSet);
+		try {
+			for (WebArtifact artifact : artifacts)
+				writer.write(artifact);
+			writeSearchIndex(searchIndex, writer);
+			return writer.finish();
+		} finally {
+			writer.shutdown();
+		}
 	}
 
-	private String resolveField(String field) {
-		if (dataAlias.containsKey(field))
-			return resolveField(dataAlias.get(field));
-		return field;
+	/**
+	 * Builds the search index of the generated artifacts.
+	 */
+	public WebSearchIndex getSearchIndex() {
+		WebSearchIndex searchIndex = new WebSearchIndex();
+		for (WebArtifact artifact : artifacts)
+			searchIndex.add(artifact);
+		return searchIndex;
 	}
 
-	public void saveArtifactsToDir(File dir) throws IOException {
-		dir.mkdirs();
-		for (WebArtifact artifact : artifacts)
-			save(artifact, dir);
+	private void writeSearchIndex(WebSearchIndex searchIndex, WebArtifactWriter writer) {
+		if (searchIndex == null)
+			return;
+		for (Map.Entry<String, String> file : searchIndexFiles(searchIndex).entrySet())
+			writer.write(file.getKey(), file.getValue());
 	}
 
-	public void saveReportsToDir(File dir) throws IOException {
-		dir.mkdirs();
-		for (WebArtifact report : getReports())
-			save(report, dir);
+	private Map<String, String> searchIndexFiles(WebSearchIndex searchIndex) {
+		Map<String, String> files = searchIndex.getFiles();
+		files.put(WebSearchIndex.DIR + WebSearchIndex.SCRIPT_TEMPLATE + ".js",
+				context.getTemplate(WebSearchIndex.SCRIPT_TEMPLATE, null, ".js"));
+		return files;
 	}
 
-	private void save(WebArtifact artifact, File dir) throws IOException {
-		PrintWriter out = new PrintWriter(new File(dir, artifact.getFileName()), charSet);
-		try {
-			out.write(artifact.getContent());
-		} finally {
-			out.close();
+	/**
+	 * Saves the generated web artifacts, the reports and, if enabled, the
+	 * search index as entries of a single ZIP archive, replacing any previous
+	 * archive only when complete.
+	 * 
+	 * @param compressed
+	 *            whether the entries are compressed or stored
+	 */
+	public void saveArchive(File archive, boolean compressed) throws IOException {
+		try (WebArchiveWriter writer = new WebArchiveWriter(archive, charSet)) {
+			writer.setCompressed(compressed);
+			for (WebArtifact artifact : artifacts)
+				writer.write(artifact);
+			for (WebArtifact report : getReports())
+				writer.write(report);
+			if (searchIndexed)
+				for (Map.Entry<String, String> file : searchIndexFiles(getSearchIndex()).entrySet())
+					writer.write(file.getKey(), file.getValue());
+			writer.finish();
 		}
 	}
 
@@ -275,7 +417,74 @@ public class WebInterface {
 		this.webGenReportTitle = webGenReportTitle;
 	}
 
-	private String[] getLines(String text) {
-		return text.split("\r\n?|\n");
+	public WebPageBudget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the limits to the weight of each generated page, or
+	 * <code>null</code> for no limits.
+	 */
+	public void setBudget(WebPageBudget budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * @return the weight of each artifact generated by the last generation
+	 */
+	public List<WebPageWeight> getPageWeights() {
+		if (weightsPending) {
+			weightsPending = false;
+			List<WebPage> pages = getPages();
+			for (int i = 0; i < artifacts.size(); i++)
+				addWeight(new WebPageWeight(pages.get(i), artifacts.get(i), charSet));
+		}
+		return pageWeights;
+	}
+
+	/**
+	 * @return the limits of a warning budget exceeded by the last generation
+	 */
+	public List<String> getBudgetWarnings() {
+		return budgetWarnings;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets how many artifacts, or top-level sections of an artifact, are
+	 * generated concurrently from the shared context, by default one, so that
+	 * they are generated in order. Artifacts are still weighed, saved and
+	 * listed in the order of their pages, with the same content.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public WebProfiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * Sets the profiler to which the generation of each artifact is
+	 * attributed, line by line of the specification, or <code>null</code> for
+	 * no profiling.
+	 */
+	public void setProfiler(WebProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	public boolean isSearchIndexed() {
+		return searchIndexed;
+	}
+
+	/**
+	 * Sets whether a search index, with the script for searching it, is saved
+	 * along with the artifacts, in the <code>search</code> subdirectory.
+	 */
+	public void setSearchIndexed(boolean searchIndexed) {
+		this.searchIndexed = searchIndexed;
 	}
 }
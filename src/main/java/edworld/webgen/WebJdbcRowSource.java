@@ -0,0 +1,166 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import edworld.util.TextUtil;
+
+/**
+ * Row source reading the data of the pages from a relational database, through
+ * JDBC. Each collection <code>//context/id</code> is read by an SQL query:
+ * every row of its result is a row of the collection, having a field per
+ * non-null column, named after the standard id of the column label. A text is
+ * read as the first column of the first row of its query. The queries of a data
+ * context are run together, in one read-only transaction, when the first page
+ * having such context is generated. Their rows are fetched from the database by
+ * the fetch size into the compact data of the context, which is kept in memory
+ * only for the contexts of the pages generated last.
+ *
+ * @see WebContext#getData(String)
+ */
+public class WebJdbcRowSource implements WebRowSource {
+	public static final int DEFAULT_FETCH_SIZE = 500;
+	protected static final String ROW = "row";
+	protected static TextUtil textUtil = new TextUtil();
+
+	private final String url;
+	private final Properties properties = new Properties();
+	private final Map<String, List<Query>> queries = new HashMap<String, List<Query>>();
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+
+	/**
+	 * @param url
+	 *            the JDBC URL of the database
+	 * @param user
+	 *            optional user of the database
+	 * @param password
+	 *            optional password of the user
+	 */
+	public WebJdbcRowSource(String url, String user, String password) {
+		this.url = url;
+		if (user != null)
+			properties.setProperty("user", user);
+		if (password != null)
+			properties.setProperty("password", password);
+	}
+
+	/**
+	 * Reads the collection <code>//context/id</code> by an SQL query.
+	 */
+	public void addRows(String context, String id, String sql) {
+		addQuery(new Query(textUtil.standardId(context), textUtil.standardId(id), sql, false));
+	}
+
+	/**
+	 * Reads the text of <code>//context/id</code> by an SQL query.
+	 */
+	public void addText(String context, String id, String sql) {
+		addQuery(new Query(textUtil.standardId(context), textUtil.standardId(id), sql, true));
+	}
+
+	private synchronized void addQuery(Query query) {
+		List<Query> contextQueries = queries.get(query.context);
+		if (contextQueries == null) {
+			contextQueries = new ArrayList<Query>();
+			queries.put(query.context, contextQueries);
+		}
+		contextQueries.add(query);
+	}
+
+	private synchronized List<Query> getQueries(String context) {
+		List<Query> contextQueries = queries.get(context);
+		return contextQueries == null ? new ArrayList<Query>() : new ArrayList<Query>(contextQueries);
+	}
+
+	@Override
+	public WebData read(String context) {
+		WebData.Writer writer = new WebData.Writer();
+		List<Query> contextQueries = getQueries(context);
+		if (contextQueries.isEmpty())
+			return writer.toData();
+		try (Connection connection = DriverManager.getConnection(url, properties)) {
+			connection.setReadOnly(true);
+			connection.setAutoCommit(false);
+			writer.startElement(context);
+			for (Query query : contextQueries)
+				query.read(connection, writer);
+			writer.endElement();
+			connection.commit();
+		} catch (SQLException e) {
+			throw new IllegalArgumentException(e);
+		}
+		return writer.toData();
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * @param fetchSize
+	 *            the number of rows fetched from the database at a time
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	private class Query {
+		private String context;
+		private String id;
+		private String sql;
+		private boolean text;
+
+		private Query(String context, String id, String sql, boolean text) {
+			this.context = context;
+			this.id = id;
+			this.sql = sql;
+			this.text = text;
+		}
+
+		private void read(Connection connection, WebData.Writer writer) throws SQLException {
+			try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY)) {
+				statement.setFetchSize(fetchSize);
+				try (ResultSet result = statement.executeQuery(sql)) {
+					writer.startElement(id);
+					if (text)
+						readText(result, writer);
+					else
+						readRows(result, writer);
+					writer.endElement();
+				}
+			}
+		}
+
+		private void readText(ResultSet result, WebData.Writer writer) throws SQLException {
+			if (result.next() && result.getString(1) != null)
+				writer.text(result.getString(1));
+		}
+
+		private void readRows(ResultSet result, WebData.Writer writer) throws SQLException {
+			ResultSetMetaData metaData = result.getMetaData();
+			String[] fields = new String[metaData.getColumnCount()];
+			for (int i = 0; i < fields.length; i++)
+				fields[i] = textUtil.standardId(metaData.getColumnLabel(i + 1));
+			while (result.next()) {
+				writer.startElement(ROW);
+				for (int i = 0; i < fields.length; i++) {
+					String value = result.getString(i + 1);
+					if (value != null)
+						writer.startElement(fields[i]).text(value).endElement();
+				}
+				writer.endElement();
+			}
+		}
+	}
+}
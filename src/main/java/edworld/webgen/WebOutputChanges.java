@@ -0,0 +1,74 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The files added, changed, left unchanged and removed by saving a set of web
+ * artifacts into a directory.
+ */
+public class WebOutputChanges {
+	public static final String ADDED = "added";
+	public static final String CHANGED = "changed";
+	public static final String UNCHANGED = "unchanged";
+
+	private List<String> added = new ArrayList<String>();
+	private List<String> changed = new ArrayList<String>();
+	private List<String> unchanged = new ArrayList<String>();
+	private List<String> removed = new ArrayList<String>();
+	private Map<String, String> changes = new HashMap<String, String>();
+
+	public List<String> getAdded() {
+		return added;
+	}
+
+	public List<String> getChanged() {
+		return changed;
+	}
+
+	public List<String> getUnchanged() {
+		return unchanged;
+	}
+
+	public List<String> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Accounts for a file added, changed or left unchanged.
+	 * 
+	 * @param change
+	 *            one of {@link #ADDED}, {@link #CHANGED} or {@link #UNCHANGED}
+	 */
+	public void add(String fileName, String change) {
+		if (ADDED.equals(change))
+			added.add(fileName);
+		else if (CHANGED.equals(change))
+			changed.add(fileName);
+		else if (UNCHANGED.equals(change))
+			unchanged.add(fileName);
+		else
+			throw new IllegalArgumentException("Unknown change: " + change);
+		changes.put(fileName, change);
+	}
+
+	/**
+	 * @return how a file was saved ({@link #ADDED}, {@link #CHANGED} or
+	 *         {@link #UNCHANGED}), or <code>null</code> if it was not saved
+	 */
+	public String getChange(String fileName) {
+		return changes.get(fileName);
+	}
+
+	public boolean isEmpty() {
+		return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "added=" + added + " changed=" + changed + " removed=" + removed;
+	}
+}
@@ -0,0 +1,128 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edworld.util.TextUtil;
+
+/**
+ * A page declared by the specification, i.e. the title mark and the lines
+ * below it, from which one web artifact is generated. A detail page is
+ * generated for a data row from the lines of a shared page definition, where
+ * <code>${row:field}</code> stands for the text of a field of the row.
+ */
+public class WebPage {
+	protected static final Pattern ROW_FIELD_REGEX = Pattern.compile("\\$\\{row:([^\\}]+)\\}");
+	protected static TextUtil textUtil = new TextUtil();
+
+	private final String title;
+	private final String fileName;
+	private final List<String> lines;
+	private final List<String> locations;
+	private final WebData rowData;
+	private final int row;
+
+	public WebPage(String title, String fileName, List<String> lines) {
+		this(title, fileName, lines, null);
+	}
+
+	/**
+	 * @param locations
+	 *            where each line is declared, as <code>source:number</code>,
+	 *            or <code>null</code> if unknown
+	 */
+	public WebPage(String title, String fileName, List<String> lines, List<String> locations) {
+		this.title = title;
+		this.fileName = fileName;
+		this.lines = Collections.unmodifiableList(new ArrayList<String>(lines));
+		this.locations = locations == null ? null : Collections.unmodifiableList(new ArrayList<String>(locations));
+		this.rowData = null;
+		this.row = WebData.NONE;
+	}
+
+	/**
+	 * Detail page sharing the lines of a page definition.
+	 * 
+	 * @param row
+	 *            the data row whose fields replace the
+	 *            <code>${row:field}</code> references of the lines
+	 */
+	public WebPage(WebPage definition, String title, String fileName, WebData rowData, int row) {
+		this.title = title;
+		this.fileName = fileName;
+		this.lines = definition.lines;
+		this.locations = definition.locations;
+		this.rowData = rowData;
+		this.row = row;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * @return the lines of the page or, for a detail page, of its definition
+	 */
+	public List<String> getLines() {
+		return lines;
+	}
+
+	/**
+	 * @return the line of the given index, with the fields of the row of a
+	 *         detail page in place of their references
+	 */
+	public String getLine(int index) {
+		return rowData == null ? lines.get(index) : rowText(lines.get(index), rowData, row);
+	}
+
+	/**
+	 * Whether this page is generated for a data row from a page definition.
+	 */
+	public boolean isDetailPage() {
+		return rowData != null;
+	}
+
+	/**
+	 * @return the data holding the row of a detail page, or <code>null</code>
+	 */
+	protected WebData getRowData() {
+		return rowData;
+	}
+
+	protected int getRow() {
+		return row;
+	}
+
+	/**
+	 * Replaces the <code>${row:field}</code> references of a text by the text
+	 * content of the fields of a data row.
+	 */
+	public static String rowText(String text, WebData rowData, int row) {
+		if (!text.contains("${row:"))
+			return text;
+		StringBuffer result = new StringBuffer();
+		Matcher matcher = ROW_FIELD_REGEX.matcher(text);
+		while (matcher.find())
+			matcher.appendReplacement(result, Matcher.quoteReplacement(
+					rowData.textContent(rowData.field(row, textUtil.standardId(matcher.group(1).trim())))));
+		matcher.appendTail(result);
+		return result.toString();
+	}
+
+	/**
+	 * @return where the line of the given index is declared, such as
+	 *         <code>specification:12</code> or <code>/site/group.wiki:3</code>
+	 *         for a line of an included fragment
+	 */
+	public String getLocation(int index) {
+		return locations == null ? "line " + (index + 1) : locations.get(index);
+	}
+}
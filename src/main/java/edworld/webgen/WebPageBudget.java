@@ -0,0 +1,121 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Limits to the weight of each generated page. A limit of zero means no
+ * limit. A page over budget either fails the generation or gets a warning.
+ */
+public class WebPageBudget {
+	protected static final String PROP_BYTES = "max-bytes";
+	protected static final String PROP_TABLE_ROWS = "max-table-rows";
+	protected static final String PROP_INPUTS = "max-inputs";
+	protected static final String PROP_MENU_ENTRIES = "max-menu-entries";
+	protected static final String PROP_COMPONENT_SIZE = "max-component-size";
+	protected static final String PROP_ACTION = "action";
+	protected static final String ACTION_FAIL = "fail";
+
+	private long maxBytes;
+	private int maxTableRows;
+	private int maxInputs;
+	private int maxMenuEntries;
+	private int maxComponentSize;
+	private boolean failing;
+
+	/**
+	 * Reads a budget from per-site properties: <code>max-bytes</code>,
+	 * <code>max-table-rows</code>, <code>max-inputs</code>,
+	 * <code>max-menu-entries</code>, <code>max-component-size</code> (in
+	 * characters) and <code>action</code> (<code>warn</code> or
+	 * <code>fail</code>).
+	 */
+	public static WebPageBudget fromProperties(Properties properties) {
+		WebPageBudget budget = new WebPageBudget();
+		try {
+			budget.setMaxBytes(Long.parseLong(properties.getProperty(PROP_BYTES, "0").trim()));
+			budget.setMaxTableRows(Integer.parseInt(properties.getProperty(PROP_TABLE_ROWS, "0").trim()));
+			budget.setMaxInputs(Integer.parseInt(properties.getProperty(PROP_INPUTS, "0").trim()));
+			budget.setMaxMenuEntries(Integer.parseInt(properties.getProperty(PROP_MENU_ENTRIES, "0").trim()));
+			budget.setMaxComponentSize(Integer.parseInt(properties.getProperty(PROP_COMPONENT_SIZE, "0").trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(e);
+		}
+		budget.setFailing(ACTION_FAIL.equalsIgnoreCase(properties.getProperty(PROP_ACTION, "").trim()));
+		return budget;
+	}
+
+	/**
+	 * @return the limits exceeded by a page, described for humans
+	 */
+	public List<String> violations(WebPageWeight weight) {
+		List<String> result = new ArrayList<String>();
+		if (maxBytes > 0 && weight.getBytes() > maxBytes)
+			result.add(weight.getBytes() + " bytes > " + maxBytes);
+		if (maxTableRows > 0 && weight.getTableRows() > maxTableRows)
+			result.add(weight.getTableRows() + " table rows > " + maxTableRows);
+		if (maxInputs > 0 && weight.getInputs() > maxInputs)
+			result.add(weight.getInputs() + " inputs > " + maxInputs);
+		if (maxMenuEntries > 0 && weight.getMenuEntries() > maxMenuEntries)
+			result.add(weight.getMenuEntries() + " menu entries > " + maxMenuEntries);
+		if (maxComponentSize > 0)
+			for (WebPageWeight.Component component : weight.getLargestComponents())
+				if (component.getSize() > maxComponentSize)
+					result.add(component + " > " + maxComponentSize + " chars");
+		return result;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public int getMaxTableRows() {
+		return maxTableRows;
+	}
+
+	public void setMaxTableRows(int maxTableRows) {
+		this.maxTableRows = maxTableRows;
+	}
+
+	public int getMaxInputs() {
+		return maxInputs;
+	}
+
+	public void setMaxInputs(int maxInputs) {
+		this.maxInputs = maxInputs;
+	}
+
+	public int getMaxMenuEntries() {
+		return maxMenuEntries;
+	}
+
+	public void setMaxMenuEntries(int maxMenuEntries) {
+		this.maxMenuEntries = maxMenuEntries;
+	}
+
+	public int getMaxComponentSize() {
+		return maxComponentSize;
+	}
+
+	public void setMaxComponentSize(int maxComponentSize) {
+		this.maxComponentSize = maxComponentSize;
+	}
+
+	/**
+	 * Whether a page over budget fails the generation, instead of getting a
+	 * warning.
+	 */
+	public boolean isFailing() {
+		return failing;
+	}
+
+	public void setFailing(boolean failing) {
+		this.failing = failing;
+	}
+}
@@ -0,0 +1,149 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The weight of a generated page: its size in bytes, its largest components,
+ * each one tied to the specification line it was rendered from, and its
+ * counts of table rows (outside table headers), data inputs and menu entries.
+ */
+public class WebPageWeight {
+	protected static final Pattern TABLE_ROW_REGEX = Pattern.compile("(?i)<tr[\\s>]");
+	protected static final Pattern TABLE_HEAD_REGEX = Pattern.compile("(?is)<thead[\\s>].*?</thead>");
+	protected static final int LARGEST_COMPONENTS = 3;
+
+	private String title;
+	private String fileName;
+	private long bytes;
+	private int tableRows;
+	private int inputs;
+	private int menuEntries;
+	private List<Component> largestComponents;
+
+	/**
+	 * @param page
+	 *            the page the artifact was generated from
+	 * @param charSet
+	 *            the encoding in which the artifact is saved
+	 */
+	public WebPageWeight(WebPage page, WebArtifact artifact, String charSet) {
+		title = artifact.getTitle();
+		fileName = artifact.getFileName();
+		try {
+			bytes = artifact.getContent().getBytes(charSet).length;
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalArgumentException(e);
+		}
+		tableRows = count(TABLE_ROW_REGEX, artifact.getContent());
+		Matcher head = TABLE_HEAD_REGEX.matcher(artifact.getContent());
+		while (head.find())
+			tableRows -= count(TABLE_ROW_REGEX, head.group());
+		inputs = artifact.getDataInputs();
+		menuEntries = artifact.getMenuEntries();
+		List<Component> components = new ArrayList<Component>();
+		for (int i = 0; i < artifact.getComponentSizes().size(); i++)
+			components.add(new Component(page.getLocation(i), page.getLines().get(i).trim(),
+					artifact.getComponentSizes().get(i)));
+		Collections.sort(components, new Comparator<Component>() {
+			@Override
+			public int compare(Component component1, Component component2) {
+				return Integer.compare(component2.size, component1.size);
+			}
+		});
+		largestComponents = new ArrayList<Component>(
+				components.subList(0, Math.min(LARGEST_COMPONENTS, components.size())));
+	}
+
+	private static int count(Pattern pattern, String text) {
+		int result = 0;
+		Matcher matcher = pattern.matcher(text);
+		while (matcher.find())
+			result++;
+		return result;
+	}
+
+	public WebPageWeight(String title, String fileName, long bytes, int tableRows, int inputs, int menuEntries,
+			List<Component> largestComponents) {
+		this.title = title;
+		this.fileName = fileName;
+		this.bytes = bytes;
+		this.tableRows = tableRows;
+		this.inputs = inputs;
+		this.menuEntries = menuEntries;
+		this.largestComponents = largestComponents;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return the number of table rows, rows of table headers excluded
+	 */
+	public int getTableRows() {
+		return tableRows;
+	}
+
+	public int getInputs() {
+		return inputs;
+	}
+
+	public int getMenuEntries() {
+		return menuEntries;
+	}
+
+	/**
+	 * @return the largest components, from the largest one
+	 */
+	public List<Component> getLargestComponents() {
+		return largestComponents;
+	}
+
+	/**
+	 * A component rendered from a specification line, with its size in
+	 * characters.
+	 */
+	public static class Component {
+		private String location;
+		private String line;
+		private int size;
+
+		public Component(String location, String line, int size) {
+			this.location = location;
+			this.line = line;
+			this.size = size;
+		}
+
+		public String getLocation() {
+			return location;
+		}
+
+		public String getLine() {
+			return line;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		@Override
+		public String toString() {
+			return location + " (" + size + " chars)";
+		}
+	}
+}
@@ -0,0 +1,293 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * Attributes the render time, the allocated bytes, the template lookups and
+ * the data rows of a generation to the specification lines, and the pages,
+ * which triggered them. Each artifact being generated is profiled by its own
+ * {@link Session}, while a profiler may be shared by many threads.
+ */
+public class WebProfiler {
+	protected static final String LINE_BREAK = System.getProperty("line.separator");
+	protected static final String POST_PROCESSING = "post-processing";
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final Map<String, HotLine> hotLines = new LinkedHashMap<String, HotLine>();
+	private final Map<String, Long> stacks = new LinkedHashMap<String, Long>();
+
+	/**
+	 * Starts profiling the generation of the artifact of a page.
+	 */
+	public Session startPage(WebPage page) {
+		return new Session(page, false);
+	}
+
+	/**
+	 * Starts profiling a section of the artifact of a page rendered apart,
+	 * whose work is recorded only once {@link Session#commit()} tells that the
+	 * section is kept.
+	 */
+	public Session startSection(WebPage page) {
+		return new Session(page, true);
+	}
+
+	/**
+	 * @return the specification lines, and the post-processing of each page,
+	 *         from the slowest to the fastest
+	 */
+	public synchronized List<HotLine> getHotLines() {
+		List<HotLine> result = new ArrayList<HotLine>(hotLines.values());
+		Collections.sort(result, new Comparator<HotLine>() {
+			@Override
+			public int compare(HotLine line1, HotLine line2) {
+				return Long.compare(line2.getNanos(), line1.getNanos());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return the hot lines as tab-separated text, a heading line followed by
+	 *         one line per specification line, from the slowest to the fastest
+	 */
+	public String getHotLinesReport() {
+		StringBuilder report = new StringBuilder(
+				"Time (ms)\tAllocated (KB)\tCalls\tTemplate lookups\tData rows\tPage\tLocation\tLine" + LINE_BREAK);
+		for (HotLine line : getHotLines())
+			report.append(String.format(Locale.ROOT, "%.3f", line.getNanos() / 1e6)).append('\t')
+					.append(line.getAllocatedBytes() / 1024).append('\t').append(line.getCalls()).append('\t')
+					.append(line.getTemplateLookups()).append('\t').append(line.getDataRows()).append('\t')
+					.append(line.getPage()).append('\t').append(line.getLocation()).append('\t')
+					.append(line.getLine().trim()).append(LINE_BREAK);
+		return report.toString();
+	}
+
+	/**
+	 * @return the self time, in microseconds, of each stack of page,
+	 *         specification line and nested rendering (input fields and data
+	 *         rows), in the collapsed format read by flame graph tools
+	 */
+	public synchronized String getCollapsedStacks() {
+		StringBuilder result = new StringBuilder();
+		for (Map.Entry<String, Long> stack : stacks.entrySet())
+			result.append(stack.getKey()).append(' ').append(stack.getValue() / 1000).append(LINE_BREAK);
+		return result.toString();
+	}
+
+	private synchronized void record(String stack, long selfNanos) {
+		Long nanos = stacks.get(stack);
+		stacks.put(stack, nanos == null ? selfNanos : nanos + selfNanos);
+	}
+
+	private synchronized void record(String page, Frame frame) {
+		String key = page + '\n' + frame.name;
+		HotLine hotLine = hotLines.get(key);
+		if (hotLine == null) {
+			hotLine = new HotLine(page, frame.name, frame.line);
+			hotLines.put(key, hotLine);
+		}
+		hotLine.calls++;
+		hotLine.nanos += frame.nanos;
+		hotLine.allocatedBytes += frame.bytes;
+		hotLine.templateLookups += frame.templateLookups;
+		hotLine.dataRows += frame.dataRows;
+	}
+
+	private static long allocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean)
+			return Math.max(0, ((com.sun.management.ThreadMXBean) THREADS)
+					.getThreadAllocatedBytes(Thread.currentThread().getId()));
+		return 0;
+	}
+
+	private static String frameName(String name) {
+		return name.replace(';', ',').replaceAll("\\s+", " ").trim();
+	}
+
+	/**
+	 * Profile of the generation of a single artifact, to be used by a single
+	 * thread. Frames are nested by entering and exiting them in order; the
+	 * session of a section rendered apart holds its work until committed.
+	 */
+	public class Session {
+		private final WebPage page;
+		private final Stack<Frame> frames = new Stack<Frame>();
+		private List<Frame> exited;
+
+		private Session(WebPage page, boolean deferred) {
+			this.page = page;
+			if (deferred)
+				exited = new ArrayList<Frame>();
+		}
+
+		/**
+		 * Enters the rendering of the line of the given index of the page.
+		 */
+		public void enterLine(int index) {
+			enter(page.getLocation(index), page.getLines().get(index));
+		}
+
+		/**
+		 * Enters the post-processing of the whole artifact.
+		 */
+		public void enterPostProcessing() {
+			enter(POST_PROCESSING, "");
+		}
+
+		/**
+		 * Enters a rendering nested into the current one, such as an input
+		 * field or the data rows of a component.
+		 */
+		public void enter(String name) {
+			enter(name, null);
+		}
+
+		private void enter(String name, String line) {
+			String parent = frames.isEmpty() ? frameName(page.getFileName()) : frames.peek().stack;
+			frames.push(new Frame(parent + ";" + frameName(name), name, line));
+		}
+
+		public void exit() {
+			Frame frame = frames.pop();
+			frame.nanos = System.nanoTime() - frame.start;
+			frame.bytes = allocatedBytes() - frame.startBytes;
+			frame.topLevel = frames.isEmpty();
+			if (!frame.topLevel) {
+				Frame parent = frames.peek();
+				parent.childNanos += frame.nanos;
+				parent.templateLookups += frame.templateLookups;
+				parent.dataRows += frame.dataRows;
+			}
+			if (exited == null)
+				record(frame);
+			else
+				exited.add(frame);
+		}
+
+		/**
+		 * Records the work of a section whose rendering is kept.
+		 */
+		public void commit() {
+			synchronized (WebProfiler.this) {
+				for (Frame frame : exited)
+					record(frame);
+			}
+			exited.clear();
+		}
+
+		/**
+		 * Drops the work of a section whose rendering is discarded, so that
+		 * only the rendering kept in its place is recorded.
+		 */
+		public void discard() {
+			exited.clear();
+		}
+
+		private void record(Frame frame) {
+			WebProfiler.this.record(frame.stack, frame.nanos - frame.childNanos);
+			if (frame.topLevel)
+				WebProfiler.this.record(page.getFileName(), frame);
+		}
+
+		public void templateLookup() {
+			if (!frames.isEmpty())
+				frames.peek().templateLookups++;
+		}
+
+		public void dataRows(int count) {
+			if (!frames.isEmpty())
+				frames.peek().dataRows += count;
+		}
+	}
+
+	private static class Frame {
+		private final String stack;
+		private final String name;
+		private final String line;
+		private final long start = System.nanoTime();
+		private final long startBytes = allocatedBytes();
+		private long childNanos;
+		private int templateLookups;
+		private int dataRows;
+		private long nanos;
+		private long bytes;
+		private boolean topLevel;
+
+		private Frame(String stack, String name, String line) {
+			this.stack = stack;
+			this.name = name;
+			this.line = line;
+		}
+	}
+
+	/**
+	 * Totals of a specification line of a page, including its nested
+	 * renderings, over all the times the page was generated.
+	 */
+	public static class HotLine {
+		private final String page;
+		private final String location;
+		private final String line;
+		private int calls;
+		private long nanos;
+		private long allocatedBytes;
+		private int templateLookups;
+		private int dataRows;
+
+		private HotLine(String page, String location, String line) {
+			this.page = page;
+			this.location = location;
+			this.line = line;
+		}
+
+		/**
+		 * @return the file name of the page
+		 */
+		public String getPage() {
+			return page;
+		}
+
+		/**
+		 * @return where the line is declared, as <code>source:number</code>,
+		 *         or {@link WebProfiler#POST_PROCESSING}
+		 */
+		public String getLocation() {
+			return location;
+		}
+
+		public String getLine() {
+			return line;
+		}
+
+		public int getCalls() {
+			return calls;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+
+		public int getTemplateLookups() {
+			return templateLookups;
+		}
+
+		public int getDataRows() {
+			return dataRows;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edworld.util.TextUtil;
+
+/**
+ * Compiled rendering of the data rows of a component: the field names, the item
+ * template of each field split into literal text and slots (id, name, title,
+ * attributes and elements), and the row template split around its content
+ * place. Rows are then rendered with no template lookup, regular expression or
+ * parsing.
+ */
+public class WebRowPlan {
+	protected static final String LINE_BREAK = System.getProperty("line.separator");
+	protected static final Pattern SLOT_REGEX = Pattern
+			.compile("\\$\\{(id|name|title)\\}|\\$\\{(attribute|element):([^\\}]+)\\}");
+	protected static final Pattern SLOT_NAME_REGEX = Pattern.compile("[\\w\\-:]+");
+	protected static final String WHITESPACE = " \t\n\u000B\f\r";
+	private static final int LITERAL = 0;
+	private static final int ID = 1;
+	private static final int NAME = 2;
+	private static final int TITLE = 3;
+	private static final int ATTRIBUTE = 4;
+	private static final int ELEMENT = 5;
+	protected static TextUtil textUtil = new TextUtil();
+
+	private String[] fieldNames;
+	private List<Map<String, String>> fieldReplacements;
+	private int[][] slotKinds;
+	private String[][] slotTexts;
+	private String[] rowParts;
+	private boolean compiled;
+
+	/**
+	 * @param itemTemplate
+	 *            the content of the template of each data item
+	 * @param rowTemplate
+	 *            the content of the template of each row, holding the items in
+	 *            its content place
+	 * @param fields
+	 *            the component parameters naming the fields of each row, or an
+	 *            empty array for rendering each row as a single item
+	 */
+	public WebRowPlan(String itemTemplate, String rowTemplate, String[] fields) {
+		this(sameTemplates(itemTemplate, fields), rowTemplate, fields);
+	}
+
+	/**
+	 * @param itemTemplates
+	 *            the content of the template of the data items of each field,
+	 *            or of each row if there are no fields
+	 */
+	public WebRowPlan(String[] itemTemplates, String rowTemplate, String[] fields) {
+		fieldNames = new String[fields.length];
+		fieldReplacements = new ArrayList<Map<String, String>>();
+		for (int i = 0; i < fields.length; i++) {
+			WebComponent component = WebComponent.toWebComponent(fields[i]);
+			String name = component == null ? fields[i] : component.getTitle();
+			fieldNames[i] = textUtil.standardId(name.replaceAll(WebArtifact.PARAMETER_SUFFIX_REGEX, ""));
+			fieldReplacements.add(component == null ? null : component.getReplacements());
+		}
+		rowParts = rowTemplate.split(Pattern.quote(WebArtifact.CONTENT_PLACE), -1);
+		slotKinds = new int[itemTemplates.length][];
+		slotTexts = new String[itemTemplates.length][];
+		compiled = true;
+		for (int i = 0; i < itemTemplates.length && compiled; i++)
+			compiled = compileItem(itemTemplates[i], i);
+	}
+
+	private static String[] sameTemplates(String itemTemplate, String[] fields) {
+		String[] itemTemplates = new String[Math.max(1, fields.length)];
+		Arrays.fill(itemTemplates, itemTemplate);
+		return itemTemplates;
+	}
+
+	private boolean compileItem(String itemTemplate, int index) {
+		List<Integer> kinds = new ArrayList<Integer>();
+		List<String> texts = new ArrayList<String>();
+		Set<String> attributes = new HashSet<String>();
+		Matcher matcher = SLOT_REGEX.matcher(itemTemplate);
+		int end = 0;
+		while (matcher.find()) {
+			kinds.add(LITERAL);
+			texts.add(itemTemplate.substring(end, matcher.start()));
+			end = matcher.end();
+			if (matcher.group(1) != null) {
+				kinds.add(matcher.group(1).equals("id") ? ID : matcher.group(1).equals("name") ? NAME : TITLE);
+				texts.add(null);
+				continue;
+			}
+			String slotName = matcher.group(3);
+			if (!SLOT_NAME_REGEX.matcher(slotName).matches())
+				return false;
+			if (matcher.group(2).equals("attribute") && !attributes.add(slotName))
+				return false;
+			kinds.add(matcher.group(2).equals("attribute") ? ATTRIBUTE : ELEMENT);
+			texts.add(slotName);
+		}
+		kinds.add(LITERAL);
+		texts.add(itemTemplate.substring(end));
+		slotKinds[index] = new int[kinds.size()];
+		for (int i = 0; i < kinds.size(); i++)
+			slotKinds[index][i] = kinds.get(i);
+		slotTexts[index] = texts.toArray(new String[texts.size()]);
+		return true;
+	}
+
+	/**
+	 * Whether the item template could be compiled; otherwise the rows must be
+	 * rendered by expanding the item template for each data item.
+	 */
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	/**
+	 * Renders the given rows, separated by line breaks.
+	 * 
+	 * @param artifact
+	 *            the artifact being generated, where item ids are allocated and
+	 *            item titles are indexed for search
+	 */
+	public String render(WebData source, int[] rows, WebArtifact artifact) {
+		if (artifact == null)
+			throw new IllegalArgumentException("No artifact for rendering the rows");
+		int[] fields = new int[fieldNames.length];
+		for (int i = 0; i < fields.length; i++)
+			fields[i] = source.nameIndex(fieldNames[i]);
+		int[][] names = new int[slotTexts.length][];
+		for (int item = 0; item < names.length; item++) {
+			names[item] = new int[slotTexts[item].length];
+			for (int i = 0; i < names[item].length; i++)
+				names[item][i] = slotTexts[item][i] == null || slotKinds[item][i] == LITERAL ? WebData.NONE
+						: source.nameIndex(slotTexts[item][i]);
+		}
+		StringBuilder result = new StringBuilder();
+		StringBuilder rowContent = new StringBuilder();
+		for (int i = 0; i < rows.length; i++) {
+			rowContent.setLength(0);
+			if (fields.length == 0)
+				renderItem(source, rows[i], null, 0, names[0], rowContent, artifact);
+			else
+				for (int j = 0; j < fields.length; j++)
+					renderItem(source, source.field(rows[i], fields[j]), fieldReplacements.get(j), j, names[j],
+							rowContent, artifact);
+			if (i > 0)
+				result.append(LINE_BREAK);
+			result.append(rowParts[0]);
+			for (int part = 1; part < rowParts.length; part++)
+				result.append(rowContent).append(rowParts[part]);
+		}
+		return result.toString();
+	}
+
+	private void renderItem(WebData source, int node, Map<String, String> replacements, int item, int[] names,
+			StringBuilder out, WebArtifact artifact) {
+		int[] slotKinds = this.slotKinds[item];
+		String[] slotTexts = this.slotTexts[item];
+		String title = source.textContent(node);
+		String id = null;
+		for (int i = 0; i < slotKinds.length; i++)
+			switch (slotKinds[i]) {
+			case LITERAL:
+				out.append(slotTexts[i]);
+				break;
+			case ID:
+				if (id == null)
+					id = artifact.createItemId(title);
+				out.append(id);
+				break;
+			case NAME:
+				out.append(textUtil.standardId(title));
+				break;
+			case TITLE:
+				out.append(title);
+				artifact.indexText(title);
+				break;
+			case ATTRIBUTE:
+				trimEnd(out);
+				if (node != WebData.NONE && replacements != null && replacements.containsKey(slotTexts[i]))
+					out.append(replacements.get(slotTexts[i]));
+				out.append(source.attribute(node, names[i]));
+				break;
+			default:
+				out.append(source.textContent(source.field(node, names[i])));
+			}
+	}
+
+	private void trimEnd(StringBuilder text) {
+		int length = text.length();
+		while (length > 0 && WHITESPACE.indexOf(text.charAt(length - 1)) >= 0)
+			length--;
+		text.setLength(length);
+	}
+}
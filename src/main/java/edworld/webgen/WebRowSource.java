@@ -0,0 +1,22 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+/**
+ * Source of the data read by the generated pages. Data is read by data context
+ * (the standard id of a page title, or <code>default</code>), in the compact
+ * form where the collection <code>//context/id</code> is found by
+ * {@link WebData#rows(String, String)} and its text by
+ * {@link WebData#text(String, String)}. XML data is itself a row source of
+ * every context.
+ *
+ * @see WebJdbcRowSource
+ */
+public interface WebRowSource {
+	/**
+	 * Reads the collections and texts of a data context, once for every page
+	 * having such context.
+	 *
+	 * @return the data, possibly empty
+	 */
+	WebData read(String context);
+}
@@ -0,0 +1,126 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import edworld.util.TextUtil;
+
+/**
+ * Inverted index of the generated artifacts, for searching them in the
+ * browser. Each artifact is indexed by its title and by the texts of the
+ * headings and data items rendered into it. Terms are lower case, without
+ * diacritics, and are kept in shards by their first characters, so that a
+ * client loads only the shards of the terms being searched. Each shard line
+ * holds a term and its artifact numbers, encoded in base 36 as the gaps
+ * between successive numbers.
+ */
+public class WebSearchIndex {
+	protected static final String LINE_BREAK = "\n";
+	protected static final String DIR = "search/";
+	protected static final String DOCUMENTS_FILE = DIR + "documents.json";
+	protected static final String SCRIPT_TEMPLATE = "webgen-search";
+	protected static final int PREFIX_LENGTH = 2;
+	protected static final int MIN_TERM_LENGTH = 2;
+	protected static TextUtil textUtil = new TextUtil();
+
+	private List<String[]> documents = new ArrayList<String[]>();
+	private Map<String, List<Integer>> postings = new TreeMap<String, List<Integer>>();
+
+	/**
+	 * Indexes an artifact as the next document of the index.
+	 */
+	public void add(WebArtifact artifact) {
+		int document = documents.size();
+		documents.add(new String[] { artifact.getFileName(), artifact.getTitle() });
+		addTerms(document, artifact.getTitle());
+		for (String text : artifact.getSearchTexts())
+			addTerms(document, text);
+	}
+
+	private void addTerms(int document, String text) {
+		for (String term : terms(text)) {
+			List<Integer> documents = postings.get(term);
+			if (documents == null) {
+				documents = new ArrayList<Integer>();
+				postings.put(term, documents);
+			}
+			if (documents.isEmpty() || documents.get(documents.size() - 1) != document)
+				documents.add(document);
+		}
+	}
+
+	/**
+	 * Splits a text, which may hold HTML markup, into search terms.
+	 */
+	public static List<String> terms(String text) {
+		String plainText = StringEscapeUtils.unescapeHtml4(text.replaceAll("<[^>]*>", " "));
+		List<String> result = new ArrayList<String>();
+		for (String term : textUtil.removeDiacritics(plainText.toLowerCase()).split("[^a-z0-9]+"))
+			if (term.length() >= MIN_TERM_LENGTH)
+				result.add(term);
+		return result;
+	}
+
+	public int getDocumentCount() {
+		return documents.size();
+	}
+
+	public int getTermCount() {
+		return postings.size();
+	}
+
+	/**
+	 * @return the content of each file of the index, by file name relative to
+	 *         the directory of the artifacts
+	 */
+	public Map<String, String> getFiles() {
+		Map<String, String> files = new LinkedHashMap<String, String>();
+		files.put(DOCUMENTS_FILE, documentsContent());
+		StringBuilder shard = new StringBuilder();
+		String prefix = null;
+		for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+			String termPrefix = prefix(entry.getKey());
+			if (!termPrefix.equals(prefix)) {
+				if (prefix != null)
+					files.put(shardName(prefix), shard.toString());
+				shard.setLength(0);
+				prefix = termPrefix;
+			}
+			shard.append(entry.getKey());
+			int previous = 0;
+			char separator = '\t';
+			for (int document : entry.getValue()) {
+				shard.append(separator).append(Integer.toString(document - previous, 36));
+				previous = document;
+				separator = ',';
+			}
+			shard.append(LINE_BREAK);
+		}
+		if (prefix != null)
+			files.put(shardName(prefix), shard.toString());
+		return files;
+	}
+
+	private String documentsContent() {
+		StringBuilder result = new StringBuilder("[");
+		for (int i = 0; i < documents.size(); i++)
+			result.append(i == 0 ? "" : ",").append(LINE_BREAK).append("[\"")
+					.append(StringEscapeUtils.escapeJson(documents.get(i)[0])).append("\",\"")
+					.append(StringEscapeUtils.escapeJson(documents.get(i)[1])).append("\"]");
+		return result.append(LINE_BREAK).append("]").append(LINE_BREAK).toString();
+	}
+
+	private String prefix(String term) {
+		return term.substring(0, Math.min(PREFIX_LENGTH, term.length()));
+	}
+
+	protected static String shardName(String prefix) {
+		return DIR + "terms-" + prefix + ".txt";
+	}
+}
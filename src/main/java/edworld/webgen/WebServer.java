@@ -0,0 +1,118 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server rendering the web artifacts on demand: each page of the
+ * specification is generated only on its first request and then kept in a
+ * {@link WebArtifactCache}. Requests are handled by a pool of threads, so
+ * cached pages are served while others are being generated.
+ */
+public class WebServer {
+	protected WebInterface webInterface;
+	protected WebArtifactCache cache;
+	protected HttpServer server;
+	protected ExecutorService executor;
+	protected int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+	protected String charSet = "UTF-8";
+
+	public WebServer(WebInterface webInterface, int cacheCapacity) {
+		this.webInterface = webInterface;
+		this.cache = new WebArtifactCache(cacheCapacity);
+	}
+
+	/**
+	 * Starts serving the web artifacts on the loopback interface.
+	 * 
+	 * @param port
+	 *            the port to listen on, or zero for any free port
+	 */
+	public void start(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		executor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public void stop() {
+		if (server != null)
+			server.stop(0);
+		server = null;
+		if (executor != null)
+			executor.shutdown();
+		executor = null;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads
+	 *            the number of threads handling requests, taken into account
+	 *            when the server is started
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid number of threads: " + threads);
+		this.threads = threads;
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public WebArtifactCache getCache() {
+		return cache;
+	}
+
+	protected void serve(HttpExchange exchange) throws IOException {
+		try {
+			WebArtifact artifact = cache.getArtifact(fileName(exchange.getRequestURI().getPath()), webInterface);
+			if (artifact == null)
+				respond(exchange, 404, "Not found: " + exchange.getRequestURI().getPath(), "text/plain");
+			else
+				respond(exchange, 200, artifact.getContent(), "text/html");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private String fileName(String path) {
+		String fileName = path.substring(path.lastIndexOf('/') + 1);
+		if (fileName.isEmpty()) {
+			List<WebPage> pages = webInterface.getPages();
+			return pages.isEmpty() ? "" : pages.get(0).getFileName();
+		}
+		return fileName;
+	}
+
+	private void respond(HttpExchange exchange, int status, String content, String contentType) throws IOException {
+		byte[] body = content.getBytes(charSet);
+		exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=" + charSet);
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+	}
+}
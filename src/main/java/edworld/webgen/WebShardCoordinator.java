@@ -0,0 +1,245 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edworld.util.TextUtil;
+
+/**
+ * Generates the artifacts of a specification through worker processes, each
+ * one generating a shard of the pages in its own JVM (see
+ * {@link WebShardWorker}), so that no single heap holds the whole generation.
+ * The coordinator loads the whole context once and hands each worker only the
+ * pages of its shard, the automatic menu and the slice of the data read by
+ * those pages. Workers write their artifacts straight into the output
+ * directory and report a summary line per artifact through a file; the
+ * coordinator then checks that each worker generated exactly the pages of its
+ * shard, keeps the manifest of the directory, deleting the files no longer
+ * generated, checks the page weights against the budget and builds the
+ * reports from the summaries, through a web interface over a context holding
+ * the specification, less the definitions of detail pages, and the data
+ * dictionary but no data.
+ */
+public class WebShardCoordinator {
+	protected static TextUtil textUtil = new TextUtil();
+
+	private final WebInterface summaries;
+	private File specification;
+	private File dataDictionary;
+	private File templatesDir;
+	private File data;
+	private File snapshot;
+	private int shards;
+	private List<String> workerOptions = new ArrayList<String>();
+
+	/**
+	 * @param dataDictionary
+	 *            optional data dictionary file
+	 * @param data
+	 *            optional (sample) data file
+	 * @param shards
+	 *            the number of worker processes
+	 */
+	public WebShardCoordinator(File specification, File dataDictionary, String defaultLanguage, File templatesDir,
+			File data, int shards) {
+		if (shards < 1)
+			throw new IllegalArgumentException("Invalid number of shards: " + shards);
+		List<WebPage> definitions = new ArrayList<WebPage>();
+		for (WebPage page : new WebSpecLoader().loadPages(reader(specification)))
+			if (!WebContext.isDetailDefinition(page))
+				definitions.add(page);
+		summaries = new WebInterface(new WebContext(definitions, reader(dataDictionary), defaultLanguage,
+				new WebTemplateFinder(templatesDir), null));
+		this.specification = specification;
+		this.dataDictionary = dataDictionary;
+		this.templatesDir = templatesDir;
+		this.data = data;
+		this.shards = shards;
+	}
+
+	private static Reader reader(File file) {
+		try {
+			return file == null ? null : Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Options of the JVM of each worker, such as <code>-Xmx2g</code>.
+	 */
+	public void setWorkerOptions(String... options) {
+		workerOptions = Arrays.asList(options);
+	}
+
+	/**
+	 * Snapshot file of the whole context, loaded by the coordinator instead of
+	 * parsing the specification and the data again on the next runs; workers
+	 * get their pages and data from the coordinator only.
+	 * 
+	 * @see WebContextSnapshot
+	 */
+	public void setSnapshot(File snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Generates the artifacts through the worker processes, which write them
+	 * into the directory, and keeps their summaries as the artifacts listed by
+	 * the reports.
+	 * 
+	 * @return the files added, changed and removed in the directory
+	 */
+	public WebOutputChanges generateArtifactsToDir(File dir) throws IOException {
+		File workDir = Files.createTempDirectory("webgen-shards").toFile();
+		List<Process> processes = new ArrayList<Process>();
+		try {
+			int pages = writeInputs(workDir);
+			for (int shard = 0; shard < shards; shard++)
+				processes.add(new ProcessBuilder(workerCommand(dir, workDir, shard))
+						.redirectOutput(summaryFile(workDir, shard)).redirectError(ProcessBuilder.Redirect.INHERIT)
+						.start());
+			for (int shard = 0; shard < shards; shard++) {
+				int exitCode = processes.get(shard).waitFor();
+				if (exitCode != 0)
+					throw new IOException("Shard " + shard + " of " + shards + " failed with exit code " + exitCode);
+			}
+			return collect(dir, workDir, pages);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} finally {
+			for (Process process : processes)
+				process.destroy();
+			for (int shard = 0; shard < shards; shard++) {
+				inputFile(workDir, shard).delete();
+				summaryFile(workDir, shard).delete();
+			}
+			workDir.delete();
+		}
+	}
+
+	/**
+	 * Loads the whole context, from the snapshot if its inputs did not change,
+	 * and writes the input of each worker.
+	 * 
+	 * @return the number of pages, detail pages included
+	 */
+	private int writeInputs(File workDir) throws IOException {
+		String dataText = data == null ? null : textUtil.extractText(data);
+		String defaultLanguage = summaries.getContext().getDefaultLanguage();
+		WebTemplateFinder templateFinder = new WebTemplateFinder(templatesDir);
+		WebContextSnapshot contextSnapshot = snapshot == null ? null : new WebContextSnapshot(snapshot);
+		WebContext context = contextSnapshot == null
+				? new WebContext(reader(specification), reader(dataDictionary), defaultLanguage, templateFinder,
+						dataText)
+				: contextSnapshot.getContext(textUtil.extractText(specification),
+						dataDictionary == null ? null : textUtil.extractText(dataDictionary), defaultLanguage,
+						templateFinder, dataText);
+		for (int shard = 0; shard < shards; shard++)
+			WebShardWorker.writeInput(inputFile(workDir, shard), context, shard, shards);
+		if (contextSnapshot != null)
+			contextSnapshot.save(context);
+		return context.getPages().size();
+	}
+
+	private List<String> workerCommand(File dir, File workDir, int shard) {
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.addAll(workerOptions);
+		command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), WebShardWorker.class.getName(),
+				inputFile(workDir, shard).getAbsolutePath(), templatesDir.getAbsolutePath(), dir.getAbsolutePath()));
+		return command;
+	}
+
+	private File inputFile(File workDir, int shard) {
+		return new File(workDir, "shard-" + shard + ".input");
+	}
+
+	private File summaryFile(File workDir, int shard) {
+		return new File(workDir, "shard-" + shard + ".txt");
+	}
+
+	private WebOutputChanges collect(File dir, File workDir, int pages) throws IOException {
+		Map<Integer, WebShardSummary> lines = new TreeMap<Integer, WebShardSummary>();
+		for (int shard = 0; shard < shards; shard++) {
+			List<Integer> generated = new ArrayList<Integer>();
+			for (String line : Files.readAllLines(summaryFile(workDir, shard).toPath(), StandardCharsets.UTF_8))
+				if (!line.isEmpty()) {
+					WebShardSummary summary = WebShardSummary.parse(line);
+					generated.add(summary.getPageIndex());
+					lines.put(summary.getPageIndex(), summary);
+				}
+			List<Integer> expected = WebShardWorker.shardIndexes(pages, shard, shards);
+			if (!generated.equals(expected))
+				throw new IOException("Shard " + shard + " of " + shards + " generated the pages " + generated
+						+ " instead of " + expected);
+		}
+		List<WebArtifact> artifacts = new ArrayList<WebArtifact>();
+		List<WebPageWeight> weights = new ArrayList<WebPageWeight>();
+		WebArtifactWriter writer = new WebArtifactWriter(dir, WebInterface.ARTIFACTS_MANIFEST, WebShardWorker.CHARSET);
+		try {
+			for (WebShardSummary summary : lines.values()) {
+				writer.written(summary.getFileName(), summary.getChange());
+				artifacts.add(summary.toArtifact(summaries.getContext()));
+				weights.add(summary.getWeight());
+			}
+			summaries.setArtifacts(artifacts, weights);
+			return writer.finish();
+		} finally {
+			writer.shutdown();
+		}
+	}
+
+	/**
+	 * @return the summaries of the artifacts generated by the last generation,
+	 *         holding no content
+	 */
+	public List<WebArtifact> getArtifacts() {
+		return summaries.getArtifacts();
+	}
+
+	public List<WebArtifact> getReports() {
+		return summaries.getReports();
+	}
+
+	public WebOutputChanges saveReportsToDir(File dir) throws IOException {
+		return summaries.saveReportsToDir(dir);
+	}
+
+	public List<WebPage> getPages() {
+		return summaries.getPages();
+	}
+
+	public WebPageBudget getBudget() {
+		return summaries.getBudget();
+	}
+
+	/**
+	 * @see WebInterface#setBudget(WebPageBudget)
+	 */
+	public void setBudget(WebPageBudget budget) {
+		summaries.setBudget(budget);
+	}
+
+	public List<WebPageWeight> getPageWeights() {
+		return summaries.getPageWeights();
+	}
+
+	public List<String> getBudgetWarnings() {
+		return summaries.getBudgetWarnings();
+	}
+
+	public void setWebGenReportTitle(String webGenReportTitle) {
+		summaries.setWebGenReportTitle(webGenReportTitle);
+	}
+}
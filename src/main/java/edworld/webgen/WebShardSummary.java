@@ -0,0 +1,122 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a shard worker tells the coordinator about an artifact it generated:
+ * the position of its page in the specification, its weight (file name,
+ * title, size, counts and largest components), its data output count and how
+ * its file was saved. A summary is exchanged as a single line of tab-separated
+ * fields, the largest components closing the line as groups of location, line
+ * and size.
+ */
+public class WebShardSummary {
+	private static final int FIELDS = 9;
+
+	private int pageIndex;
+	private WebPageWeight weight;
+	private int dataOutputs;
+	private String change;
+
+	public WebShardSummary(int pageIndex, WebPageWeight weight, int dataOutputs, String change) {
+		this.pageIndex = pageIndex;
+		this.weight = weight;
+		this.dataOutputs = dataOutputs;
+		this.change = change;
+	}
+
+	public static WebShardSummary parse(String line) {
+		String[] fields = line.split("\t", -1);
+		if (fields.length < FIELDS || (fields.length - FIELDS) % 3 != 0)
+			throw new IllegalArgumentException("Invalid shard summary: " + line);
+		try {
+			List<WebPageWeight.Component> components = new ArrayList<WebPageWeight.Component>();
+			for (int i = FIELDS; i < fields.length; i += 3)
+				components.add(new WebPageWeight.Component(unescape(fields[i]), unescape(fields[i + 1]),
+						Integer.parseInt(fields[i + 2])));
+			WebPageWeight weight = new WebPageWeight(unescape(fields[2]), unescape(fields[1]),
+					Long.parseLong(fields[6]), Integer.parseInt(fields[7]), Integer.parseInt(fields[3]),
+					Integer.parseInt(fields[8]), components);
+			return new WebShardSummary(Integer.parseInt(fields[0]), weight, Integer.parseInt(fields[4]), fields[5]);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid shard summary: " + line, e);
+		}
+	}
+
+	public String toLine() {
+		StringBuilder line = new StringBuilder().append(pageIndex).append('\t').append(escape(weight.getFileName()))
+				.append('\t').append(escape(weight.getTitle())).append('\t').append(weight.getInputs()).append('\t')
+				.append(dataOutputs).append('\t').append(change).append('\t').append(weight.getBytes()).append('\t')
+				.append(weight.getTableRows()).append('\t').append(weight.getMenuEntries());
+		for (WebPageWeight.Component component : weight.getLargestComponents())
+			line.append('\t').append(escape(component.getLocation())).append('\t')
+					.append(escape(component.getLine())).append('\t').append(component.getSize());
+		return line.toString();
+	}
+
+	/**
+	 * @return a copy of this summary telling how the artifact file was saved
+	 */
+	public WebShardSummary withChange(String change) {
+		return new WebShardSummary(pageIndex, weight, dataOutputs, change);
+	}
+
+	/**
+	 * @return an artifact holding the summarized information but no content,
+	 *         for reporting
+	 */
+	public WebArtifact toArtifact(WebContext context) {
+		WebArtifact artifact = new WebArtifact(weight.getTitle(), null, weight.getFileName(), context);
+		artifact.setDataInputs(weight.getInputs());
+		artifact.setDataOutputs(dataOutputs);
+		artifact.setMenuEntries(weight.getMenuEntries());
+		return artifact;
+	}
+
+	private static String escape(String text) {
+		return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	private static String unescape(String text) {
+		StringBuilder result = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\\' && i + 1 < text.length()) {
+				c = text.charAt(++i);
+				c = c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c;
+			}
+			result.append(c);
+		}
+		return result.toString();
+	}
+
+	public int getPageIndex() {
+		return pageIndex;
+	}
+
+	public String getFileName() {
+		return weight.getFileName();
+	}
+
+	public String getTitle() {
+		return weight.getTitle();
+	}
+
+	public int getDataInputs() {
+		return weight.getInputs();
+	}
+
+	public int getDataOutputs() {
+		return dataOutputs;
+	}
+
+	public String getChange() {
+		return change;
+	}
+
+	public WebPageWeight getWeight() {
+		return weight;
+	}
+}
@@ -0,0 +1,181 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edworld.util.BinaryUtil;
+import edworld.util.TextUtil;
+
+/**
+ * Generates one shard of the pages of a specification, the pages whose
+ * position modulo the number of shards is the shard number, each artifact
+ * being released as soon as it is written. Run as a program, the worker reads
+ * its input from a file written by the coordinator: the pages of the shard,
+ * the automatic menu of the whole specification and only the part of the XML
+ * data read by those pages, so that its JVM holds neither the other pages nor
+ * the whole data. It prints one {@link WebShardSummary} line per generated
+ * artifact.
+ * 
+ * @see WebShardCoordinator
+ * @see #writeInput(File, WebContext, int, int)
+ */
+public class WebShardWorker {
+	protected static final String CHARSET = "UTF-8";
+	protected static TextUtil textUtil = new TextUtil();
+	protected static BinaryUtil binaryUtil = new BinaryUtil();
+
+	private WebContext context;
+	private List<WebPage> pages;
+	private List<Integer> pageIndexes;
+
+	/**
+	 * Worker of a shard of the pages of a context holding every page.
+	 */
+	public WebShardWorker(WebContext context, int shard, int shards) {
+		this.context = context;
+		this.pageIndexes = shardIndexes(context.getPages().size(), shard, shards);
+		this.pages = new ArrayList<WebPage>();
+		for (int index : pageIndexes)
+			pages.add(context.getPages().get(index));
+	}
+
+	/**
+	 * Worker of the context of a shard, holding only the pages of the shard.
+	 */
+	private WebShardWorker(WebContext context, List<Integer> pageIndexes) {
+		this.context = context;
+		this.pages = context.getPages();
+		this.pageIndexes = pageIndexes;
+	}
+
+	/**
+	 * @return the positions of the pages of a shard, in page order
+	 */
+	protected static List<Integer> shardIndexes(int pages, int shard, int shards) {
+		if (shard < 0 || shard >= shards)
+			throw new IllegalArgumentException("Invalid shard " + shard + " of " + shards);
+		List<Integer> result = new ArrayList<Integer>();
+		for (int i = shard; i < pages; i += shards)
+			result.add(i);
+		return result;
+	}
+
+	/**
+	 * Generates the artifacts of the shard into a directory, leaving the other
+	 * files of the directory untouched.
+	 * 
+	 * @return the summaries of the generated artifacts, in page order
+	 */
+	public List<WebShardSummary> generateArtifactsToDir(File dir) throws IOException {
+		List<WebShardSummary> generated = new ArrayList<WebShardSummary>();
+		WebArtifactWriter writer = new WebArtifactWriter(dir, null, CHARSET);
+		try {
+			for (int i = 0; i < pages.size(); i++) {
+				WebArtifact artifact = context.generateArtifact(pages.get(i));
+				writer.write(artifact);
+				generated.add(new WebShardSummary(pageIndexes.get(i), new WebPageWeight(pages.get(i), artifact,
+						CHARSET), artifact.getDataOutputs(), null));
+			}
+			WebOutputChanges changes = writer.finish();
+			List<WebShardSummary> summaries = new ArrayList<WebShardSummary>();
+			for (WebShardSummary summary : generated)
+				summaries.add(summary.withChange(changes.getChange(summary.getFileName())));
+			return summaries;
+		} finally {
+			writer.shutdown();
+		}
+	}
+
+	/**
+	 * Writes the input of the worker of a shard of the pages of a context: the
+	 * language, the behavior and aliases of the data fields, the automatic
+	 * menu of the context, the pages of the shard with their positions (the
+	 * row of each detail page along with it) and the slice of the XML data
+	 * holding the default context and the contexts of those pages.
+	 * 
+	 * @see WebData#slice(Set)
+	 */
+	public static void writeInput(File file, WebContext context, int shard, int shards) throws IOException {
+		if (context.getRowSource() != null && !(context.getRowSource() instanceof WebData))
+			throw new IllegalArgumentException("Only XML data can be sliced into shards");
+		List<Integer> indexes = shardIndexes(context.getPages().size(), shard, shards);
+		Set<String> dataContexts = new HashSet<String>();
+		dataContexts.add(textUtil.standardId(WebArtifact.DEFAULT_DATA_CONTEXT));
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(file.toPath())))) {
+			binaryUtil.writeText(out, context.getDefaultLanguage());
+			WebContextSnapshot.writeMap(out, context.getDataBehavior());
+			WebContextSnapshot.writeMap(out, context.getDataAlias());
+			binaryUtil.writeText(out, context.getAutoMenu());
+			out.writeInt(context.getMenuSize());
+			out.writeInt(indexes.size());
+			for (int index : indexes) {
+				WebPage page = context.getPages().get(index);
+				out.writeInt(index);
+				WebContextSnapshot.writePage(out, page);
+				out.writeBoolean(page.isDetailPage());
+				if (page.isDetailPage())
+					page.getRowData().subtree(page.getRow()).write(out);
+				dataContexts.add(textUtil.standardId(page.getTitle()));
+			}
+			out.writeBoolean(context.getRowSource() != null);
+			if (context.getRowSource() != null)
+				((WebData) context.getRowSource()).slice(dataContexts).write(out);
+		}
+	}
+
+	/**
+	 * @return the worker of the shard whose input was written by
+	 *         {@link #writeInput(File, WebContext, int, int)}
+	 */
+	public static WebShardWorker readInput(File file, WebTemplateFinder templateFinder) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		String defaultLanguage = binaryUtil.readText(buffer);
+		Map<String, String> dataBehavior = WebContextSnapshot.readMap(buffer);
+		Map<String, String> dataAlias = WebContextSnapshot.readMap(buffer);
+		String autoMenu = binaryUtil.readText(buffer);
+		int menuSize = buffer.getInt();
+		List<WebPage> pages = new ArrayList<WebPage>();
+		List<Integer> pageIndexes = new ArrayList<Integer>();
+		for (int i = buffer.getInt(); i > 0; i--) {
+			pageIndexes.add(buffer.getInt());
+			WebPage page = WebContextSnapshot.readPage(buffer);
+			pages.add(buffer.get() == 0 ? page
+					: new WebPage(page, page.getTitle(), page.getFileName(), WebData.read(buffer), 0));
+		}
+		WebData data = buffer.get() == 0 ? null : WebData.read(buffer);
+		return new WebShardWorker(new WebContext(pages, autoMenu, menuSize, dataBehavior, dataAlias,
+				defaultLanguage, templateFinder, data), pageIndexes);
+	}
+
+	/**
+	 * Arguments: input file written by
+	 * {@link #writeInput(File, WebContext, int, int)}, templates directory and
+	 * output directory.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("Usage: " + WebShardWorker.class.getName() + " <input> <templates> <output>");
+			System.exit(2);
+		}
+		WebShardWorker worker = readInput(new File(args[0]), new WebTemplateFinder(new File(args[1])));
+		List<WebShardSummary> summaries = worker.generateArtifactsToDir(new File(args[2]));
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out, CHARSET));
+		for (WebShardSummary summary : summaries)
+			out.write(summary.toLine() + "\n");
+		out.flush();
+	}
+}
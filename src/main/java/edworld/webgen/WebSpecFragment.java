@@ -0,0 +1,108 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed piece of specification: its lines, classified as page headings,
+ * include directives or page content.
+ */
+public class WebSpecFragment {
+	protected static final String PAGE_REGEX = "\\s*==[^=].*";
+	protected static final Pattern INCLUDE_REGEX = Pattern.compile("\\s*\\{\\{include:([^\\}]+)\\}\\}\\s*");
+
+	private final String[] lines;
+	private final String[] titles;
+	private final String[] includes;
+
+	private WebSpecFragment(String text) {
+		lines = text.split("\r\n?|\n");
+		titles = new String[lines.length];
+		includes = new String[lines.length];
+		for (int i = 0; i < lines.length; i++) {
+			titles[i] = title(lines[i]);
+			includes[i] = titles[i] == null ? include(lines[i]) : null;
+		}
+	}
+
+	private WebSpecFragment(List<String> lines, List<String> titles, List<String> includes) {
+		this.lines = lines.toArray(new String[lines.size()]);
+		this.titles = titles.toArray(new String[titles.size()]);
+		this.includes = includes.toArray(new String[includes.size()]);
+	}
+
+	private static String title(String line) {
+		return line.matches(PAGE_REGEX) ? line.replaceAll("==", "").trim() : null;
+	}
+
+	private static String include(String line) {
+		Matcher matcher = INCLUDE_REGEX.matcher(line);
+		return matcher.matches() ? matcher.group(1).trim() : null;
+	}
+
+	/**
+	 * Parses a specification line by line while reading it, without keeping
+	 * its whole text.
+	 */
+	public static WebSpecFragment read(Reader reader) throws IOException {
+		BufferedReader lineReader = reader instanceof BufferedReader ? (BufferedReader) reader
+				: new BufferedReader(reader);
+		List<String> lines = new ArrayList<String>();
+		List<String> titles = new ArrayList<String>();
+		List<String> includes = new ArrayList<String>();
+		int emptyLines = 0;
+		for (String line = lineReader.readLine(); line != null; line = lineReader.readLine()) {
+			if (line.isEmpty()) {
+				emptyLines++;
+				continue;
+			}
+			for (; emptyLines > 0; emptyLines--) {
+				lines.add("");
+				titles.add(null);
+				includes.add(null);
+			}
+			String title = title(line);
+			lines.add(line);
+			titles.add(title);
+			includes.add(title == null ? include(line) : null);
+		}
+		return new WebSpecFragment(lines, titles, includes);
+	}
+
+	/**
+	 * Parses a specification text.
+	 */
+	public static WebSpecFragment parse(String text) {
+		return new WebSpecFragment(text);
+	}
+
+	public int size() {
+		return lines.length;
+	}
+
+	public String getLine(int index) {
+		return lines[index];
+	}
+
+	/**
+	 * @return the title of the page started by the line, or <code>null</code>
+	 *         if the line is not a page heading
+	 */
+	public String getTitle(int index) {
+		return titles[index];
+	}
+
+	/**
+	 * @return the path (or file URI) of the fragment included by the line, or
+	 *         <code>null</code> if the line is not an include directive
+	 */
+	public String getInclude(int index) {
+		return includes[index];
+	}
+}
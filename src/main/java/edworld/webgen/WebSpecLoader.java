@@ -0,0 +1,240 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import edworld.util.TextUtil;
+
+/**
+ * Loads the pages of a specification composed from fragment files through
+ * <code>{{include:path}}</code> lines. Included fragments (and the fragments
+ * they include) are read and parsed in parallel as soon as they are referenced,
+ * while pages are assembled in declaration order, so the result is the same as
+ * if every include line were replaced by the text of its fragment. Relative
+ * paths are resolved against the directory of the including fragment, or
+ * against the working directory for the main specification. A loader keeps the
+ * fragments parsed by its last load by content hash, so loading again with the
+ * same loader parses only the fragments whose content changed.
+ */
+public class WebSpecLoader {
+	protected static final String MAIN_SOURCE = "specification";
+	protected static TextUtil textUtil = new TextUtil();
+
+	private final Map<String, Future<WebSpecFragment>> fragments = new ConcurrentHashMap<>();
+	private final Map<String, WebSpecFragment> parsed = new ConcurrentHashMap<>();
+	private Map<String, WebSpecFragment> lastParsed = new HashMap<>();
+	private final Stack<String> includeStack = new Stack<String>();
+	private List<WebPage> pages;
+	private ExecutorService executor;
+	private long hits;
+	private long parses;
+	private String title;
+	private List<String> lines;
+	private List<String> locations;
+
+	/**
+	 * @return the pages declared by the specification and by the fragments it
+	 *         includes, in declaration order
+	 */
+	public List<WebPage> loadPages(String specification) {
+		return loadPages(WebSpecFragment.parse(specification));
+	}
+
+	/**
+	 * Loads the pages of a specification read line by line, then closes the
+	 * reader.
+	 * 
+	 * @see #loadPages(String)
+	 */
+	public List<WebPage> loadPages(Reader specification) {
+		try (Reader reader = specification) {
+			return loadPages(WebSpecFragment.read(reader));
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * @return the paths of the fragment files included so far, sorted
+	 */
+	public List<String> getIncludedPaths() {
+		List<String> result = new ArrayList<String>(fragments.keySet());
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * @return how many fragment files were found parsed by the last load
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return how many fragment files were parsed
+	 */
+	public synchronized long getParses() {
+		return parses;
+	}
+
+	private List<WebPage> loadPages(WebSpecFragment fragment) {
+		fragments.clear();
+		includeStack.clear();
+		pages = new ArrayList<WebPage>();
+		title = null;
+		try {
+			prefetch(fragment, null);
+			append(fragment, null, MAIN_SOURCE);
+			if (title != null)
+				pages.add(newPage());
+			return pages;
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+			executor = null;
+			lastParsed = new HashMap<>(parsed);
+			parsed.clear();
+		}
+	}
+
+	/**
+	 * Reads a fragment file, parsing it only if no fragment with the same
+	 * content was parsed by the last load.
+	 */
+	private WebSpecFragment load(File file) throws IOException {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		String hash = hash(bytes);
+		WebSpecFragment fragment = lastParsed.get(hash);
+		if (fragment == null)
+			fragment = parsed.get(hash);
+		synchronized (this) {
+			if (fragment == null)
+				parses++;
+			else
+				hits++;
+		}
+		if (fragment == null)
+			fragment = WebSpecFragment.parse(textUtil.extractText(new ByteArrayInputStream(bytes)));
+		parsed.put(hash, fragment);
+		return fragment;
+	}
+
+	private static String hash(byte[] bytes) {
+		try {
+			return new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(bytes)).toString(16);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	private void append(WebSpecFragment fragment, File directory, String source) {
+		for (int i = 0; i < fragment.size(); i++)
+			if (fragment.getInclude(i) != null)
+				include(resolve(directory, fragment.getInclude(i)));
+			else if (fragment.getTitle(i) != null) {
+				if (title != null)
+					pages.add(newPage());
+				title = fragment.getTitle(i);
+				lines = new ArrayList<String>();
+				locations = new ArrayList<String>();
+			} else if (title != null) {
+				lines.add(fragment.getLine(i));
+				locations.add(source + ":" + (i + 1));
+			}
+	}
+
+	private void include(File file) {
+		String path = file.getPath();
+		if (includeStack.contains(path))
+			throw new IllegalArgumentException("Circular include of " + path);
+		includeStack.push(path);
+		append(fetched(file), file.getParentFile(), path);
+		includeStack.pop();
+	}
+
+	private WebPage newPage() {
+		return new WebPage(title, textUtil.standardId(title) + ".html", lines, locations);
+	}
+
+	private void prefetch(WebSpecFragment fragment, File directory) {
+		for (int i = 0; i < fragment.size(); i++)
+			if (fragment.getInclude(i) != null)
+				fetch(resolve(directory, fragment.getInclude(i)));
+	}
+
+	private Future<WebSpecFragment> fetch(final File file) {
+		Future<WebSpecFragment> result = fragments.get(file.getPath());
+		if (result != null)
+			return result;
+		FutureTask<WebSpecFragment> task = new FutureTask<WebSpecFragment>(new Callable<WebSpecFragment>() {
+			public WebSpecFragment call() throws IOException {
+				WebSpecFragment fragment = load(file);
+				prefetch(fragment, file.getParentFile());
+				return fragment;
+			}
+		});
+		synchronized (this) {
+			result = fragments.get(file.getPath());
+			if (result != null)
+				return result;
+			fragments.put(file.getPath(), task);
+			executor().execute(task);
+		}
+		return task;
+	}
+
+	private WebSpecFragment fetched(File file) {
+		try {
+			return fetch(file).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalArgumentException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalArgumentException("Cannot include " + file.getPath(), e.getCause());
+		}
+	}
+
+	private synchronized ExecutorService executor() {
+		if (executor == null)
+			executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		return executor;
+	}
+
+	private File resolve(File directory, String reference) {
+		File file;
+		try {
+			URI uri = new URI(reference);
+			file = "file".equalsIgnoreCase(uri.getScheme()) ? new File(uri) : new File(reference);
+		} catch (Exception e) {
+			file = new File(reference);
+		}
+		if (!file.isAbsolute() && directory != null)
+			file = new File(directory, reference);
+		try {
+			return file.getCanonicalFile();
+		} catch (IOException e) {
+			return file.getAbsoluteFile();
+		}
+	}
+}
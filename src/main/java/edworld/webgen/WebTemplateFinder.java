@@ -2,8 +2,6 @@
 package edworld.webgen;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -27,18 +25,21 @@ public class WebTemplateFinder {
 		String fileName = textUtil.standardId(templateName) + templateExtension;
 		File templateFile = new File(templatesDir, fileName);
 		if (templateFile.exists())
-			try {
-				return applyReplacements(textUtil.extractText(new FileInputStream(templateFile)), replacements);
-			} catch (FileNotFoundException e) {
-				throw new IllegalArgumentException(e);
-			}
-		String resourceName = "/templates/" + fileName;
+			return applyReplacements(textUtil.extractText(templateFile), replacements);
+		String resourceName = resourceName(templateName, templateExtension);
 		InputStream templateStream = streamFromResourceName(resourceName);
 		if (templateStream == null)
 			throw new IllegalArgumentException("Template resource not found: " + resourceName);
 		return applyReplacements(textUtil.extractText(templateStream), replacements);
 	}
 
+	/**
+	 * @return the name of the classpath resource of a built-in template
+	 */
+	protected static String resourceName(String templateName, String templateExtension) {
+		return "/templates/" + textUtil.standardId(templateName) + templateExtension;
+	}
+
 	protected InputStream streamFromResourceName(String resourceName) {
 		return WebTemplateFinder.class.getResourceAsStream(resourceName);
 	}
@@ -0,0 +1,108 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of parsed XML documents, keyed by path (or URI) and last modification
+ * time, so that each XML data source referenced by components is parsed once
+ * no matter how many artifacts use it. Documents are kept in their compact
+ * {@link WebData} form. Each context has its own cache, thus holding only the
+ * documents its specification references; a remote document, having no
+ * modification time, is read once per context.
+ * 
+ * @see WebContext#getXmlDocuments()
+ */
+public class XmlDocumentCache {
+	private Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private long hits;
+	private long parses;
+
+	/**
+	 * Returns the document referenced by a path or URI, parsing it only if it
+	 * was not parsed before or if it was modified since then.
+	 */
+	public WebData getDocument(String reference) {
+		long lastModified = lastModified(reference);
+		Entry entry = entries.get(reference);
+		if (entry == null || entry.lastModified != lastModified)
+			synchronized (this) {
+				entry = entries.get(reference);
+				if (entry == null || entry.lastModified != lastModified) {
+					entry = new Entry(lastModified, WebData.parse(reference));
+					entries.put(reference, entry);
+					parses++;
+					return entry.document;
+				}
+			}
+		synchronized (this) {
+			hits++;
+		}
+		return entry.document;
+	}
+
+	private long lastModified(String reference) {
+		File file = toFile(reference);
+		return file == null ? 0 : file.lastModified();
+	}
+
+	private File toFile(String reference) {
+		try {
+			URI uri = new URI(reference);
+			if ("file".equalsIgnoreCase(uri.getScheme()))
+				return new File(uri);
+			if (uri.getScheme() != null && uri.getScheme().length() > 1)
+				return null;
+		} catch (Exception e) {
+			// not an URI, thus a plain path
+		}
+		return new File(reference);
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public int getSize() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getParses() {
+		return parses;
+	}
+
+	/**
+	 * Estimates the heap used by the cached documents.
+	 */
+	public long getEstimatedMemory() {
+		long result = 0;
+		for (Entry entry : entries.values())
+			result += entry.estimatedMemory;
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("documents=%d parses=%d hits=%d estimatedMemory=%d bytes", getSize(), getParses(),
+				getHits(), getEstimatedMemory());
+	}
+
+	private static class Entry {
+		private long lastModified;
+		private WebData document;
+		private long estimatedMemory;
+
+		private Entry(long lastModified, WebData document) {
+			this.lastModified = lastModified;
+			this.document = document;
+			this.estimatedMemory = document.getEstimatedMemory();
+		}
+	}
+}
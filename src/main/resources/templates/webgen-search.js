@@ -0,0 +1,86 @@
+// Client of the search index generated by WebGen into the "search" directory.
+// Usage: webgenSearch("query text", function(results) { ... }) where each result is [fileName, title].
+// Shards are loaded lazily, by the first two characters of each searched term, and kept for later searches.
+var webgenSearch = (function() {
+	var base = (document.currentScript && document.currentScript.src.replace(/[^\/]*$/, "")) || "search/";
+	var loaded = {};
+
+	function load(file, parse, callback) {
+		if (loaded[file])
+			return loaded[file].done ? callback(loaded[file].value) : loaded[file].callbacks.push(callback);
+		var entry = loaded[file] = { done: false, value: null, callbacks: [ callback ] };
+		var request = new XMLHttpRequest();
+		request.onreadystatechange = function() {
+			if (request.readyState !== 4)
+				return;
+			entry.value = parse(request.status === 200 || request.status === 0 ? request.responseText : "");
+			entry.done = true;
+			for (var i = 0; i < entry.callbacks.length; i++)
+				entry.callbacks[i](entry.value);
+		};
+		request.open("GET", base + file);
+		request.send();
+	}
+
+	function parseShard(text) {
+		var shard = {};
+		var lines = text.split("\n");
+		for (var i = 0; i < lines.length; i++) {
+			var parts = lines[i].split("\t");
+			if (parts.length < 2)
+				continue;
+			var gaps = parts[1].split(","), documents = [], document = 0;
+			for (var j = 0; j < gaps.length; j++)
+				documents.push(document += parseInt(gaps[j], 36));
+			shard[parts[0]] = documents;
+		}
+		return shard;
+	}
+
+	function terms(text) {
+		var normalized = text.normalize ? text.normalize("NFD") : text;
+		var result = [];
+		var parts = normalized.toLowerCase().replace(/[^\x00-\x7F]/g, "").split(/[^a-z0-9]+/);
+		for (var i = 0; i < parts.length; i++)
+			if (parts[i].length >= 2)
+				result.push(parts[i]);
+		return result;
+	}
+
+	// Documents having any indexed term starting with the searched term.
+	function matching(shard, term) {
+		var result = {};
+		for (var key in shard)
+			if (shard.hasOwnProperty(key) && key.lastIndexOf(term, 0) === 0)
+				for (var i = 0; i < shard[key].length; i++)
+					result[shard[key][i]] = true;
+		return result;
+	}
+
+	return function(query, callback) {
+		var searched = terms(query);
+		if (!searched.length)
+			return callback([]);
+		load("documents.json", JSON.parse, function(documents) {
+			var found = null, pending = searched.length;
+			for (var i = 0; i < searched.length; i++)
+				(function(term) {
+					load("terms-" + term.substring(0, 2) + ".txt", parseShard, function(shard) {
+						var documentSet = matching(shard, term);
+						if (found === null)
+							found = documentSet;
+						else
+							for (var document in found)
+								if (!documentSet[document])
+									delete found[document];
+						if (--pending === 0) {
+							var results = [];
+							for (var document in found)
+								results.push(documents[document]);
+							callback(results);
+						}
+					});
+				})(searched[i]);
+		});
+	};
+})();
@@ -0,0 +1,50 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TextUtilTest {
+	@Test
+	public void standardId() {
+		TextUtil textUtil = new TextUtil();
+		Assert.assertEquals("a_complex_name_title", textUtil.standardId("a complex\\name/title?."));
+		Assert.assertEquals("date_time", textUtil.standardId(":Date/Time;"));
+		Assert.assertEquals("ab", textUtil.standardId("a.b"));
+		Assert.assertEquals("_", textUtil.standardId("."));
+	}
+
+	@Test
+	public void extractText() throws IOException {
+		TextUtil textUtil = new TextUtil();
+		Assert.assertEquals("a\nb", textUtil.extractText(new ByteArrayInputStream("a\nb".getBytes("UTF-8"))));
+		Assert.assertEquals("a\nb", textUtil.extractText(new ByteArrayInputStream("a\nb\r\n".getBytes("UTF-8"))));
+		Assert.assertEquals("ação\n", textUtil.extractText(new ByteArrayInputStream("ação\n\n".getBytes("UTF-8"))));
+		Assert.assertEquals("", textUtil.extractText(new ByteArrayInputStream(new byte[0])));
+		Assert.assertEquals("a\u2028",
+				textUtil.extractText(new ByteArrayInputStream("a\u2028\u2029".getBytes("UTF-8"))));
+		Assert.assertEquals(null, textUtil.extractText((ByteArrayInputStream) null));
+	}
+
+	@Test
+	public void extractTextFromFile() throws IOException {
+		TextUtil textUtil = new TextUtil();
+		File file = new File("target/text-util/small.txt");
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), "Seção\r\n".getBytes("UTF-8"));
+		Assert.assertEquals("Seção", textUtil.extractText(file));
+		char[] large = new char[3 * 1024 * 1024];
+		Arrays.fill(large, 'ã');
+		File largeFile = new File("target/text-util/large.txt");
+		Files.write(largeFile.toPath(), (new String(large) + "\n").getBytes("UTF-8"));
+		Assert.assertEquals(new String(large), textUtil.extractText(largeFile));
+		Assert.assertEquals(new String(large),
+				textUtil.extractText(new ByteArrayInputStream(Files.readAllBytes(largeFile.toPath()))));
+	}
+}
@@ -0,0 +1,46 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+import edworld.util.TextUtil;
+
+public class WebArchiveWriterTest {
+	private File archive = new File("target/web-archive/site.zip");
+
+	@Test
+	public void writeStoredAndCompressedEntries() throws IOException {
+		try (WebArchiveWriter writer = new WebArchiveWriter(archive, "UTF-8")) {
+			writer.setCompressed(false);
+			writer.write("index.html", "<p>Seção</p>");
+			writer.write("search/terms-se.txt", "secao\t0\n", true);
+			writer.finish();
+		}
+		try (ZipFile zip = new ZipFile(archive)) {
+			assertEquals(ZipEntry.STORED, zip.getEntry("index.html").getMethod());
+			assertEquals(ZipEntry.DEFLATED, zip.getEntry("search/terms-se.txt").getMethod());
+			assertEquals("<p>Seção</p>", new TextUtil().extractText(zip.getInputStream(zip.getEntry("index.html"))));
+		}
+	}
+
+	@Test
+	public void keepPreviousArchiveUnlessFinished() throws IOException {
+		archive.getParentFile().mkdirs();
+		Files.write(archive.toPath(), "previous".getBytes("UTF-8"));
+		try (WebArchiveWriter writer = new WebArchiveWriter(archive, "UTF-8")) {
+			writer.write("index.html", "<p>unfinished</p>");
+		}
+		assertEquals("previous", new String(Files.readAllBytes(archive.toPath()), "UTF-8"));
+		File[] files = archive.getParentFile().listFiles();
+		assertEquals(1, files.length);
+		assertEquals("site.zip", files[0].getName());
+	}
+}
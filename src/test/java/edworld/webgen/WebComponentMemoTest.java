@@ -0,0 +1,52 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static edworld.webgen.WebTestSupport.templateFinder;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebComponentMemoTest {
+	private static final String LINE_BREAK = System.getProperty("line.separator");
+	private WebContext context;
+
+	@Before
+	public void setUp() {
+		String specification = "== Page one ==" + LINE_BREAK + "* {Section Common}" + LINE_BREAK
+				+ "** {Filter F} Document type | Name" + LINE_BREAK + "* {Table} Name" + LINE_BREAK
+				+ "== Page two ==" + LINE_BREAK + "* {NumericalLabel Name}" + LINE_BREAK + "* {Table} Name"
+				+ LINE_BREAK + "* {Section Common}" + LINE_BREAK + "** {Filter F} Document type | Name";
+		String dictionary = "* Document type" + LINE_BREAK + "** input: select";
+		String data = "<data><page_one><_table><row><name>One</name></row></_table></page_one>"
+				+ "<page_two><_table><row><name>Two</name></row></_table></page_two>"
+				+ "<default><document_type><item value=\"a\">A</item></document_type></default></data>";
+		context = new WebContext(specification, dictionary, "en", templateFinder(), data);
+	}
+
+	@Test
+	public void reuseComponentsWithPageIds() {
+		String content1 = context.generateArtifact("page_one.html").getContent();
+		String content2 = context.generateArtifact("page_two.html").getContent();
+		assertTrue(context.getComponentMemo().getHits() >= 2);
+		assertThat(content1, containsString("<label>Name<input type=\"text\" id=\"name\"></label>"));
+		assertThat(content2, containsString("<span id=\"name\">Name</span>"));
+		assertThat(content2, containsString("<label>Name<input type=\"text\" id=\"name_1\"></label>"));
+		assertThat(content2, containsString("<option value=\"a\">A</option>"));
+		assertThat(content1, containsString("<tr><td>One</td></tr>"));
+		assertThat(content2, containsString("<tr><td>Two</td></tr>"));
+		assertThat(content2, not(containsString("<tr><td>One</td></tr>")));
+	}
+
+	@Test
+	public void countDataOfReusedComponents() {
+		WebArtifact artifact1 = context.generateArtifact("page_one.html");
+		WebArtifact artifact2 = context.generateArtifact("page_two.html");
+		assertEquals(artifact1.getDataInputs(), artifact2.getDataInputs());
+		assertEquals(artifact1.getDataOutputs(), artifact2.getDataOutputs());
+	}
+}
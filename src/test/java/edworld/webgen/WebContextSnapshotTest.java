@@ -0,0 +1,106 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static edworld.webgen.WebTestSupport.TEMPLATES_DIR;
+import static edworld.webgen.WebTestSupport.templateFinder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edworld.util.TextUtil;
+
+public class WebContextSnapshotTest {
+	private static final String DATA = "<catalog><products><product><code>A-1</code><name>Apple</name></product>"
+			+ "<product><code>B-2</code><name>Banana</name></product></products></catalog>";
+	private File dir = new File("target/web-context-snapshot");
+	private File details = new File(dir, "details.wiki");
+	private File file = new File(dir, "context.snapshot");
+	private WebTemplateFinder templateFinder = templateFinder();
+	private String specification;
+	private String dataDictionary;
+
+	@Before
+	public void setUp() throws IOException {
+		dir.mkdirs();
+		file.delete();
+		write(details, "== ${row:name} (each=catalog/products key=code) ==\n* {Section Product ${row:code}}");
+		specification = "== Catalog ==\n* {Menu}\n* {Table Products} Code::link | Name\n* {Form Order} THeader1\n"
+				+ "{{include:" + details.getPath() + "}}";
+		dataDictionary = new TextUtil().extractText(getClass().getResourceAsStream("/data-dictionary.wiki"));
+	}
+
+	@Test
+	public void loadSavedContext() throws IOException {
+		WebContextSnapshot snapshot = new WebContextSnapshot(file);
+		WebContext context = snapshot.getContext(specification, dataDictionary, "en", templateFinder, DATA);
+		assertFalse(snapshot.isLoaded());
+		List<String> expected = contents(context);
+		snapshot.save(context);
+		WebContextSnapshot warmSnapshot = new WebContextSnapshot(file);
+		WebContext warmContext = warmSnapshot.getContext(specification, dataDictionary, "en", templateFinder, DATA);
+		assertTrue(warmSnapshot.isLoaded());
+		assertEquals(3, warmContext.getPages().size());
+		assertEquals(context.getLoadedTemplates(), warmContext.getLoadedTemplates());
+		assertEquals(context.behavior("THeader2", "input", ""), warmContext.behavior("THeader2", "input", ""));
+		assertEquals(expected, contents(warmContext));
+	}
+
+	@Test
+	public void ignoreStaleSnapshot() throws IOException {
+		WebContextSnapshot snapshot = new WebContextSnapshot(file);
+		snapshot.save(snapshot.getContext(specification, dataDictionary, "en", templateFinder, DATA));
+		snapshot.getContext(specification, dataDictionary, "en", templateFinder, DATA.replace("Apple", "Apricot"));
+		assertFalse(snapshot.isLoaded());
+		snapshot.getContext(specification, dataDictionary, "pt", templateFinder, DATA);
+		assertFalse(snapshot.isLoaded());
+		write(details, "== ${row:code} (each=catalog/products key=code) ==\n* {Section Product ${row:code}}");
+		WebContext context = snapshot.getContext(specification, dataDictionary, "en", templateFinder, DATA);
+		assertFalse(snapshot.isLoaded());
+		assertEquals("A-1", context.getPages().get(1).getTitle());
+		snapshot.save(context);
+		snapshot.getContext(specification, dataDictionary, "en", templateFinder, DATA);
+		assertTrue(snapshot.isLoaded());
+	}
+
+	@Test
+	public void ignoreSnapshotOfOtherBuiltInTemplates() throws IOException {
+		WebContextSnapshot snapshot = new WebContextSnapshot(file);
+		WebContext context = snapshot.getContext(specification, dataDictionary, "en", templateFinder, DATA);
+		contents(context);
+		snapshot.save(context);
+		WebTemplateFinder otherFinder = new WebTemplateFinder(TEMPLATES_DIR) {
+			@Override
+			protected InputStream streamFromResourceName(String resourceName) {
+				if (resourceName.equals("/templates/web-page.html"))
+					return new ByteArrayInputStream("<html>${content}</html>".getBytes());
+				return super.streamFromResourceName(resourceName);
+			}
+		};
+		snapshot.getContext(specification, dataDictionary, "en", otherFinder, DATA);
+		assertFalse(snapshot.isLoaded());
+		snapshot.getContext(specification, dataDictionary, "en", templateFinder, DATA);
+		assertTrue(snapshot.isLoaded());
+	}
+
+	private List<String> contents(WebContext context) {
+		List<String> result = new ArrayList<String>();
+		for (WebPage page : context.getPages())
+			result.add(context.generateArtifact(page).getContent());
+		return result;
+	}
+
+	private void write(File target, String content) throws IOException {
+		Files.write(target.toPath(), content.getBytes("UTF-8"));
+	}
+}
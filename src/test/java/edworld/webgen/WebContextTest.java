@@ -0,0 +1,201 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static edworld.webgen.WebTestSupport.TEMPLATES_DIR;
+import static edworld.webgen.WebTestSupport.getSpecification;
+import static edworld.webgen.WebTestSupport.templateFinder;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebContextTest {
+	private WebContext context;
+
+	@Before
+	public void setUp() {
+		WebTemplateFinder templateFinder = templateFinder();
+		context = new WebContext(getSpecification("/web-interface-specification.wiki"),
+				getSpecification("/data-dictionary.wiki"), "en", templateFinder, getSpecification("/sample-data.xml"));
+	}
+
+	@Test
+	public void generateConcurrently() throws Exception {
+		List<String> expected = new ArrayList<String>();
+		for (WebPage page : context.getPages())
+			expected.add(context.generateArtifact(page).getContent());
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 200; i++) {
+				final WebPage page = context.getPages().get(i % expected.size());
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() {
+						return context.generateArtifact(page).getContent();
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++)
+				assertEquals(expected.get(i % expected.size()), results.get(i).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void keepXmlDocumentsPerContext() {
+		for (WebPage page : context.getPages())
+			context.generateArtifact(page);
+		assertEquals(2, context.getXmlDocuments().getSize());
+		assertEquals(2, context.getXmlDocuments().getParses());
+		WebContext other = new WebContext(getSpecification("/web-interface-specification.wiki"), null, "en",
+				context.getTemplateFinder(), null);
+		assertEquals(0, other.getXmlDocuments().getSize());
+	}
+
+	@Test
+	public void askCustomTemplateFinder() {
+		WebTemplateFinder templateFinder = new WebTemplateFinder(TEMPLATES_DIR) {
+			@Override
+			public String getTemplate(String templateName, Map<String, String> replacements,
+					String templateExtension) {
+				String template = super.getTemplate(templateName, replacements, templateExtension);
+				return replacements != null && template.contains("<button") ? template.toUpperCase() : template;
+			}
+		};
+		WebContext custom = new WebContext("== Catalog ==\n* {Action Buy}", null, "en", templateFinder, null);
+		assertThat(custom.generateArtifact("catalog.html").getContent(), containsString("<BUTTON TYPE=\"BUTTON\">"));
+	}
+
+	@Test
+	public void shareContextAmongWebInterfaces() {
+		WebInterface webInterface1 = new WebInterface(context);
+		WebInterface webInterface2 = new WebInterface(context);
+		webInterface1.generateArtifacts();
+		webInterface2.generateArtifacts();
+		assertEquals(webInterface1.getArtifacts().get(0).getContent(),
+				webInterface2.getArtifacts().get(0).getContent());
+		assertEquals(webInterface1.getArtifacts().get(1).getDataOutputs(),
+				webInterface2.getArtifacts().get(1).getDataOutputs());
+	}
+
+	@Test
+	public void generateSectionsConcurrently() {
+		WebContext catalog = new WebContext(
+				"== Catalog ==\n* {Menu}\n* {Section Details}\n** {Table Products} Code | Name\n** {Action Buy}\n"
+						+ "* {Section Details}\n** {Table Products} Code | Name\n** {Action Buy}\n* {List Products}",
+				null, "en", templateFinder(),
+				"<catalog><products><product><code>A-1</code><name>Apple</name></product></products></catalog>");
+		List<WebPage> pages = new ArrayList<WebPage>(catalog.getPages());
+		pages.addAll(context.getPages());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (WebPage page : pages) {
+				WebContext pageContext = page.getTitle().equals("Catalog") ? catalog : context;
+				WebArtifact expected = pageContext.generateArtifact(page);
+				WebArtifact artifact = pageContext.generateArtifact(page, null, executor);
+				assertEquals(expected.getContent(), artifact.getContent());
+				assertEquals(expected.getDataInputs(), artifact.getDataInputs());
+				assertEquals(expected.getDataOutputs(), artifact.getDataOutputs());
+				assertEquals(expected.getComponentSizes(), artifact.getComponentSizes());
+				assertEquals(expected.getSearchTexts(), artifact.getSearchTexts());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		String content = catalog.generateArtifact("catalog.html").getContent();
+		assertThat(content, containsString("<table id=\"products_1\">"));
+		assertThat(content, containsString("<section id=\"details_1\""));
+	}
+
+	@Test
+	public void generateSectionsMissingTheMemo() {
+		String section = "* {Section Orders}\n** {Table Orders} Code\n";
+		String specification = "";
+		String data = "<data>";
+		for (String title : new String[] { "Alpha", "Beta", "Gamma" }) {
+			specification += "== " + title + " ==\n" + section + section + section;
+			data += "<" + title.toLowerCase() + "><orders><order><code>" + title + " order</code></order></orders></"
+					+ title.toLowerCase() + ">";
+		}
+		WebContext orders = new WebContext(specification, null, "en", templateFinder(), data + "</data>");
+		List<String> expected = new ArrayList<String>();
+		for (WebPage page : orders.getPages())
+			expected.add(orders.generateArtifact(page).getContent());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int i = 0; i < expected.size(); i++)
+				assertEquals(expected.get(i), orders.generateArtifact(orders.getPages().get(i), null, executor)
+						.getContent());
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(expected.get(2), containsString("<table id=\"orders_5\">"));
+		assertThat(expected.get(2), containsString("Gamma order"));
+	}
+
+	@Test
+	public void generateDetailPages() {
+		WebContext catalog = new WebContext(
+				"== Catalog ==\n* {Menu}\n* {Table Products} Code::link | Name\n* {List Products} Code::link\n"
+						+ "== ${row:name} (each=catalog/products key=code) ==\n* {Menu}\n"
+						+ "* {Section Product ${row:code}}\n** <p>${row:name} costs ${row:price}</p>",
+				null, "en", templateFinder(),
+				"<catalog><products><product><code>A-1</code><name>Apple</name><price>2</price></product>"
+						+ "<product><code>B 2</code><name>Banana</name><price>3</price></product></products></catalog>");
+		List<WebPage> pages = catalog.getPages();
+		assertEquals(3, pages.size());
+		assertEquals("a-1.html", pages.get(1).getFileName());
+		assertEquals("Apple", pages.get(1).getTitle());
+		assertEquals("b_2.html", pages.get(2).getFileName());
+		assertEquals("Banana", pages.get(2).getTitle());
+		assertSame(pages.get(1).getLines(), pages.get(2).getLines());
+		WebInterface webInterface = new WebInterface(catalog);
+		webInterface.generateArtifacts();
+		String content = webInterface.getArtifacts().get(0).getContent();
+		assertThat(content, containsString("<tr><td><a href=\"a-1.html\">A-1</a></td><td>Apple</td></tr>"));
+		assertThat(content, containsString("<li><a href=\"b_2.html\">B 2</a></li>"));
+		WebArtifact detail = catalog.generateArtifact("b_2.html");
+		assertThat(detail.getContent(), containsString("<title>Banana</title>"));
+		assertThat(detail.getContent(), containsString(">Product B 2</h2>"));
+		assertThat(detail.getContent(), containsString("<p>Banana costs 3</p>"));
+		assertThat(detail.getContent(), containsString("<a href=\"catalog.html\">Catalog</a>"));
+		assertThat(detail.getContent(), not(containsString("<a href=\"a-1.html\">")));
+		assertEquals(1, detail.getMenuEntries());
+	}
+
+	@Test
+	public void rejectInvalidDetailPages() {
+		String definition = "== Catalog ==\n* {Menu}\n== ${row:name} (each=catalog/products key=code) ==\n* {Menu}";
+		assertRejected(definition, "<catalog><products><product><code>A-1</code></product>"
+				+ "<product><code>a-1</code></product></products></catalog>", "Key a-1 of catalog/products");
+		assertRejected(definition, "<catalog><products><product><code>Catalog</code></product></products></catalog>",
+				"Key Catalog of catalog/products");
+		assertRejected(definition, "<catalog><products><product><name>Apple</name></product></products></catalog>",
+				"Missing key code");
+		assertRejected(definition, null, "No data for the detail pages of catalog/products");
+	}
+
+	private void assertRejected(String specification, String data, String message) {
+		try {
+			new WebContext(specification, null, "en", context.getTemplateFinder(), data);
+			fail("Accepted detail pages of " + data);
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), containsString(message));
+		}
+	}
+}
@@ -0,0 +1,211 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Generates a synthetic specification, data dictionary, sample data and
+ * XML= lookup files at a configurable scale.
+ */
+public class WebCorpusGenerator {
+	private static final String LINE_BREAK = System.getProperty("line.separator");
+	private static final int FIELDS = 4;
+	private static final int LOOKUP_FILES = 3;
+
+	private int pages = 10;
+	private int componentsPerPage = 10;
+	private int nestingDepth = 2;
+	private int tableRows = 10;
+	private int xmlReferences = 2;
+	private boolean menu = false;
+
+	public WebCorpusGenerator pages(int pages) {
+		this.pages = pages;
+		return this;
+	}
+
+	public WebCorpusGenerator componentsPerPage(int componentsPerPage) {
+		this.componentsPerPage = componentsPerPage;
+		return this;
+	}
+
+	public WebCorpusGenerator nestingDepth(int nestingDepth) {
+		this.nestingDepth = nestingDepth;
+		return this;
+	}
+
+	public WebCorpusGenerator tableRows(int tableRows) {
+		this.tableRows = tableRows;
+		return this;
+	}
+
+	/**
+	 * @param xmlReferences
+	 *            number of tables per page reading their rows from an XML=
+	 *            lookup file instead of the sample data
+	 */
+	public WebCorpusGenerator xmlReferences(int xmlReferences) {
+		this.xmlReferences = xmlReferences;
+		return this;
+	}
+
+	/**
+	 * @param menu
+	 *            whether every page has an automatic menu, whose size grows
+	 *            with the number of pages
+	 */
+	public WebCorpusGenerator menu(boolean menu) {
+		this.menu = menu;
+		return this;
+	}
+
+	public int getPages() {
+		return pages;
+	}
+
+	public int getComponentsPerPage() {
+		return componentsPerPage;
+	}
+
+	public int getTableRows() {
+		return tableRows;
+	}
+
+	/**
+	 * Generates the corpus files (<code>specification.wiki</code>,
+	 * <code>data-dictionary.wiki</code>, <code>sample-data.xml</code> and the
+	 * lookup files) into a directory.
+	 */
+	public void generate(File dir) throws IOException {
+		dir.mkdirs();
+		for (int i = 0; i < LOOKUP_FILES; i++)
+			write(new File(dir, lookupFileName(i)), lookupData(i));
+		write(new File(dir, "specification.wiki"), specification(dir));
+		write(new File(dir, "data-dictionary.wiki"), dataDictionary());
+		write(new File(dir, "sample-data.xml"), sampleData());
+	}
+
+	public String specification(File dir) {
+		StringBuilder result = new StringBuilder();
+		for (int page = 0; page < pages; page++) {
+			result.append("== Page ").append(page).append(" ==").append(LINE_BREAK);
+			if (menu)
+				result.append("* {Menu}").append(LINE_BREAK);
+			for (int component = 0; component < componentsPerPage; component++)
+				appendComponent(result, dir, page, component);
+		}
+		return result.toString();
+	}
+
+	private void appendComponent(StringBuilder result, File dir, int page, int component) {
+		int level = 1 + component % Math.max(1, nestingDepth);
+		String marker = stars(level);
+		switch (component % 4) {
+		case 0:
+			result.append(marker).append(" {Section Section ").append(component).append("}");
+			break;
+		case 1:
+			result.append(marker).append(" {Filter Filter ").append(component).append("} ").append(fields("Field"));
+			break;
+		case 2:
+			if (component / 4 < xmlReferences)
+				result.append(marker).append(" {Table(XML=")
+						.append(new File(dir, lookupFileName(component % LOOKUP_FILES)).getAbsolutePath())
+						.append(") Lookup ").append(component).append("} ").append(fields("Column"));
+			else
+				result.append(marker).append(" {Table Table ").append(component).append("} ").append(fields("Column"));
+			break;
+		default:
+			result.append(marker).append(" {List List ").append(component).append("}");
+		}
+		result.append(LINE_BREAK);
+	}
+
+	public String dataDictionary() {
+		StringBuilder result = new StringBuilder("== Entity ==").append(LINE_BREAK);
+		for (int field = 0; field < FIELDS; field++) {
+			result.append("* Field ").append(field).append(": description of field ").append(field).append(LINE_BREAK);
+			if (field % 2 == 1)
+				result.append("** input: select").append(LINE_BREAK);
+		}
+		return result.toString();
+	}
+
+	public String sampleData() {
+		StringBuilder result = new StringBuilder("<data>").append(LINE_BREAK);
+		for (int page = 0; page < pages; page++) {
+			result.append("<page_").append(page).append(">").append(LINE_BREAK);
+			for (int component = 0; component < componentsPerPage; component++)
+				if (component % 4 == 2)
+					appendRows(result, "table_" + component, "row", "column");
+				else if (component % 4 == 3)
+					appendRows(result, "list_" + component, "item", null);
+			result.append("</page_").append(page).append(">").append(LINE_BREAK);
+		}
+		result.append("<default>").append(LINE_BREAK);
+		for (int field = 1; field < FIELDS; field += 2)
+			appendRows(result, "field_" + field, "item", null);
+		result.append("</default>").append(LINE_BREAK);
+		return result.append("</data>").toString();
+	}
+
+	private void appendRows(StringBuilder result, String id, String rowName, String fieldPrefix) {
+		result.append("<").append(id).append(">").append(LINE_BREAK);
+		for (int row = 0; row < tableRows; row++) {
+			result.append("<").append(rowName).append(" class=\"r").append(row % 2).append("\">");
+			if (fieldPrefix == null)
+				result.append("Item ").append(row);
+			else
+				for (int field = 0; field < FIELDS; field++)
+					result.append("<").append(fieldPrefix).append("_").append(field).append(">Value ").append(row)
+							.append(".").append(field).append("</").append(fieldPrefix).append("_").append(field)
+							.append(">");
+			result.append("</").append(rowName).append(">").append(LINE_BREAK);
+		}
+		result.append("</").append(id).append(">").append(LINE_BREAK);
+	}
+
+	private String lookupData(int file) {
+		StringBuilder result = new StringBuilder("<lookup>").append(LINE_BREAK);
+		for (int row = 0; row < tableRows; row++) {
+			result.append("<entry>");
+			for (int field = 0; field < FIELDS; field++)
+				result.append("<column_").append(field).append(">Lookup ").append(file).append(".").append(row)
+						.append(".").append(field).append("</column_").append(field).append(">");
+			result.append("</entry>").append(LINE_BREAK);
+		}
+		return result.append("</lookup>").toString();
+	}
+
+	private String lookupFileName(int file) {
+		return "lookup-" + file + ".xml";
+	}
+
+	private String fields(String prefix) {
+		String result = "";
+		String separator = "";
+		for (int field = 0; field < FIELDS; field++) {
+			result += separator + prefix + " " + field;
+			separator = " | ";
+		}
+		return result;
+	}
+
+	private String stars(int level) {
+		String result = "";
+		for (int i = 0; i < level; i++)
+			result += "*";
+		return result;
+	}
+
+	private void write(File file, String content) throws IOException {
+		PrintWriter out = new PrintWriter(file, "UTF-8");
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebDataTest {
+	private WebData data;
+
+	@Before
+	public void setUp() throws UnsupportedEncodingException {
+		data = WebData.parse(new ByteArrayInputStream(("<data><page><table>"
+				+ "<row><a class=\"x\">A1</a><b><code>B</code><name>Bee</name></b></row>"
+				+ "<row><a><![CDATA[<em>A2</em>]]></a></row>" + "</table><count>57</count></page>"
+				+ "<other><table><row><a>A3</a></row></table></other>"
+				+ "<page><table><row><a>A4</a></row></table></page></data>").getBytes("UTF-8")));
+	}
+
+	@Test
+	public void rows() {
+		int[] rows = data.rows("page", "table");
+		assertEquals(3, rows.length);
+		assertEquals("A1", data.textContent(data.field(rows[0], "a")));
+		assertEquals("<em>A2</em>", data.textContent(data.field(rows[1], "a")));
+		assertEquals("A4", data.textContent(data.field(rows[2], "a")));
+		assertEquals(0, data.rows("page", "missing").length);
+		assertEquals(3, data.rootRows().length);
+	}
+
+	@Test
+	public void fields() {
+		int[][] fields = data.fields(data.rows("page", "table"), new String[] { "a", "b" });
+		assertEquals("x", data.attribute(fields[0][0], "class"));
+		assertEquals("", data.attribute(fields[1][0], "class"));
+		assertEquals("Bee", data.element(fields[0][1], "name"));
+		assertEquals("BBee", data.textContent(fields[0][1]));
+		assertEquals(WebData.NONE, fields[1][1]);
+		assertEquals("", data.textContent(fields[1][1]));
+	}
+
+	@Test
+	public void text() {
+		assertEquals("57", data.text("page", "count"));
+		assertEquals("", data.text("other", "count"));
+		assertEquals("A1", data.text("a"));
+		assertEquals("Bee", data.text("name"));
+	}
+
+	@Test
+	public void write() {
+		WebData written = new WebData.Writer().startElement("page").startElement("table").startElement("row")
+				.startElement("a").text("A5").endElement().endElement().endElement().startElement("count").text("1")
+				.endElement().endElement().toData();
+		int[] rows = written.rows("page", "table");
+		assertEquals(1, rows.length);
+		assertEquals("A5", written.element(rows[0], "a"));
+		assertEquals("", written.attribute(written.field(rows[0], "a"), "class"));
+		assertEquals("1", written.text("page", "count"));
+	}
+
+	@Test
+	public void slice() {
+		WebData slice = data.slice(new HashSet<String>(Arrays.asList("other", "b")));
+		assertEquals(0, slice.rows("page", "table").length);
+		int[] rows = slice.rows("other", "table");
+		assertEquals(1, rows.length);
+		assertEquals("A3", slice.element(rows[0], "a"));
+		assertEquals("Bee", slice.text("b", "name"));
+		assertEquals(2, slice.rootRows().length);
+		WebData page = data.slice(new HashSet<String>(Arrays.asList("page")));
+		assertEquals(3, page.rows("page", "table").length);
+		assertEquals("x", page.attribute(page.field(page.rows("page", "table")[0], "a"), "class"));
+		assertEquals("<em>A2</em>", page.textContent(page.field(page.rows("page", "table")[1], "a")));
+	}
+
+	@Test
+	public void subtree() {
+		WebData row = data.subtree(data.rows("page", "table")[0]);
+		assertEquals("BBee", row.textContent(row.field(0, "b")));
+		assertEquals("x", row.attribute(row.field(0, "a"), "class"));
+	}
+}
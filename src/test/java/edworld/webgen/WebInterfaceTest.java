@@ -1,14 +1,23 @@
 // This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
 package edworld.webgen;
 
+import static edworld.webgen.WebTestSupport.deleteFiles;
+import static edworld.webgen.WebTestSupport.getSpecification;
+import static edworld.webgen.WebTestSupport.templateFinder;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -22,7 +31,7 @@ public class WebInterfaceTest {
 
 	@Before
 	public void setUp() throws IOException {
-		WebTemplateFinder templateFinder = new WebTemplateFinder(new File("target/web-templates"));
+		WebTemplateFinder templateFinder = templateFinder();
 		webInterface = new WebInterface(getSpecification("/web-interface-specification.wiki"),
 				getSpecification("/data-dictionary.wiki"), "en", templateFinder, getSpecification("/sample-data.xml"));
 		webInterface.generateArtifacts();
@@ -198,6 +207,91 @@ public class WebInterfaceTest {
 				containsString("<tr><td><a href=\"main_page.html\">Main page</a></td><td>11</td><td>11</td></tr>"));
 		assertThat(content, containsString(
 				"<tr><td><a href=\"new_official_document.html\">New official document</a></td><td>5</td><td>7</td></tr>"));
+		assertThat(content, containsString("<th>Page</th><th>Bytes</th><th>Table rows</th><th>Inputs</th>"
+				+ "<th>Menu entries</th><th>Largest components</th><th>Budget</th>"));
+		assertThat(content, containsString("<td>3</td><td>11</td><td>2</td><td>specification:6 ("));
+	}
+
+	@Test
+	public void generateInParallel() {
+		WebInterface sequential = new WebInterface(webInterface.getContext());
+		sequential.setThreads(1);
+		sequential.generateArtifacts();
+		WebInterface parallel = new WebInterface(webInterface.getContext());
+		parallel.setThreads(4);
+		parallel.generateArtifacts();
+		for (int i = 0; i < 2; i++)
+			assertEquals(sequential.getArtifacts().get(i).getContent(), parallel.getArtifacts().get(i).getContent());
+		assertEquals(sequential.getPageWeights().get(1).getBytes(), parallel.getPageWeights().get(1).getBytes());
+	}
+
+	@Test
+	public void analyzeArtifacts() {
+		WebInterface analyzed = new WebInterface(webInterface.getContext());
+		analyzed.analyzeArtifacts();
+		assertEquals(2, analyzed.getArtifacts().size());
+		for (int i = 0; i < 2; i++) {
+			WebArtifact generated = webInterface.getArtifacts().get(i);
+			WebArtifact artifact = analyzed.getArtifacts().get(i);
+			assertEquals(generated.getFileName(), artifact.getFileName());
+			assertEquals(generated.getDataInputs(), artifact.getDataInputs());
+			assertEquals(generated.getDataOutputs(), artifact.getDataOutputs());
+			assertThat(artifact.getContent(), nullValue());
+		}
+		String content = analyzed.getReports().get(0).getContent();
+		assertThat(content,
+				containsString("<tr><td><a href=\"main_page.html\">Main page</a></td><td>11</td><td>11</td></tr>"));
+		assertThat(content, containsString(
+				"<tr><td><a href=\"new_official_document.html\">New official document</a></td><td>5</td><td>7</td></tr>"));
+	}
+
+	@Test
+	public void analyzeReports() {
+		WebContext context = webInterface.getContext();
+		WebContext reporting = new WebContext(context.getTemplate("webgen-reporting-specification", null, ".wiki"),
+				null, "en", context.getTemplateFinder(), webInterface.buildReportData());
+		WebArtifact generated = webInterface.getReports().get(0);
+		WebArtifact analyzed = reporting.analyzeArtifact(reporting.getPages().get(0));
+		assertThat(generated.getDataOutputs() > 0, is(true));
+		assertEquals(generated.getDataInputs(), analyzed.getDataInputs());
+		assertEquals(generated.getDataOutputs(), analyzed.getDataOutputs());
+	}
+
+	@Test
+	public void weighPages() throws IOException {
+		assertThat(webInterface.pageWeights.isEmpty(), is(true));
+		WebPageWeight weight = webInterface.getPageWeights().get(MAIN_PAGE);
+		assertEquals(webInterface.getArtifacts().size(), webInterface.getPageWeights().size());
+		assertEquals(webInterface.getArtifacts().get(MAIN_PAGE).getContent().getBytes("UTF-8").length,
+				weight.getBytes());
+		assertEquals(3, weight.getTableRows());
+		assertEquals(11, weight.getInputs());
+		assertEquals(2, weight.getMenuEntries());
+		assertEquals("specification:6", weight.getLargestComponents().get(0).getLocation());
+		assertEquals("** {Filter F} FInput1 | FInput2 | Document type | Author | Country",
+				weight.getLargestComponents().get(0).getLine());
+	}
+
+	@Test
+	public void warnOverBudget() {
+		Properties properties = new Properties();
+		properties.setProperty("max-inputs", "10");
+		properties.setProperty("max-table-rows", "2");
+		webInterface.setBudget(WebPageBudget.fromProperties(properties));
+		webInterface.generateArtifacts();
+		assertEquals(Arrays.asList("main_page.html: 3 table rows > 2", "main_page.html: 11 inputs > 10",
+				"new_official_document.html: 3 table rows > 2"), webInterface.getBudgetWarnings());
+		assertThat(webInterface.getReports().get(0).getContent(),
+				containsString("<td>3 table rows > 2<br>11 inputs > 10</td>"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void failOverBudget() {
+		Properties properties = new Properties();
+		properties.setProperty("max-bytes", "1000");
+		properties.setProperty("action", "fail");
+		webInterface.setBudget(WebPageBudget.fromProperties(properties));
+		webInterface.generateArtifacts();
 	}
 
 	@Test
@@ -221,12 +315,51 @@ public class WebInterfaceTest {
 		assertThat(reportFile.exists(), is(true));
 	}
 
-	private String getSpecification(String resourceName) {
-		String specification = new TextUtil().extractText(getClass().getResourceAsStream(resourceName));
-		specification = specification.replace("(XML=/references.xml)",
-				"(XML=" + getClass().getResource("/references.xml") + ")");
-		specification = specification.replace("(XML=/countries.xml)",
-				"(XML=" + getClass().getResource("/countries.xml") + ")");
-		return specification;
+	@Test
+	public void saveOnlyChangedArtifacts() throws IOException {
+		File dir = new File("target/web-test-changes");
+		deleteFiles(dir);
+		WebOutputChanges changes = webInterface.generateArtifactsToDir(dir);
+		assertEquals(Arrays.asList("main_page.html", "new_official_document.html"), changes.getAdded());
+		changes = webInterface.saveArtifactsToDir(dir);
+		assertThat(changes.isEmpty(), is(true));
+		assertEquals(2, changes.getUnchanged().size());
+		Files.write(new File(dir, "main_page.html").toPath(), "outdated".getBytes("UTF-8"));
+		Files.write(new File(dir, "old_page.html").toPath(), "removed page".getBytes("UTF-8"));
+		Files.write(new File(dir, ".webgen-artifacts").toPath(), "old_page.html".getBytes("UTF-8"));
+		changes = webInterface.saveArtifactsToDir(dir);
+		assertEquals(Arrays.asList("main_page.html"), changes.getChanged());
+		assertEquals(Arrays.asList("old_page.html"), changes.getRemoved());
+		assertThat(new File(dir, "old_page.html").exists(), is(false));
+		assertThat(new String(Files.readAllBytes(new File(dir, "main_page.html").toPath()), "UTF-8"),
+				containsString("<title>Main page</title>"));
+	}
+
+	@Test
+	public void saveSearchIndex() throws IOException {
+		File dir = new File("target/web-test-search");
+		webInterface.setSearchIndexed(true);
+		WebOutputChanges changes = webInterface.saveArtifactsToDir(dir);
+		assertThat(changes.getAdded().size() + changes.getUnchanged().size() + changes.getChanged().size() > 2,
+				is(true));
+		assertThat(new File(dir, "search/webgen-search.js").exists(), is(true));
+		assertThat(new String(Files.readAllBytes(new File(dir, "search/documents.json").toPath()), "UTF-8"),
+				containsString("[\"new_official_document.html\",\"New official document\"]"));
+		assertThat(new String(Files.readAllBytes(new File(dir, "search/terms-no.txt").toPath()), "UTF-8"),
+				containsString("nononony\t0\n"));
+	}
+
+	@Test
+	public void saveArchive() throws IOException {
+		File archive = new File("target/web-test-archive/site.zip");
+		webInterface.saveArchive(archive, true);
+		try (ZipFile zip = new ZipFile(archive)) {
+			assertEquals(3, zip.size());
+			ZipEntry entry = zip.getEntry("main_page.html");
+			assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+			assertEquals(webInterface.getArtifacts().get(MAIN_PAGE).getContent(),
+					new TextUtil().extractText(zip.getInputStream(entry)));
+			assertThat(zip.getEntry("webgen_report.html"), not(nullValue()));
+		}
 	}
 }
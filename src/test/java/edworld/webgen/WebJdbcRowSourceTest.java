@@ -0,0 +1,81 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static edworld.webgen.WebTestSupport.templateFinder;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebJdbcRowSourceTest {
+	private static final String URL = "jdbc:h2:mem:webgen;DB_CLOSE_DELAY=-1";
+	private static final String SPECIFICATION = "== Catalog ==\n* {Table Products} Code | Name\n* {Circle Total}\n"
+			+ "* {List Countries}";
+	private WebJdbcRowSource source;
+
+	@Before
+	public void setUp() throws SQLException {
+		execute("create table product (code varchar(10), name varchar(40), price decimal(8, 2))",
+				"insert into product values ('A-1', 'Apple', 1.50), ('B-2', 'Banana', null)",
+				"create table country (name varchar(40))", "insert into country values ('Brasil'), ('Chile')");
+		source = new WebJdbcRowSource(URL, "sa", "");
+		source.setFetchSize(1);
+		source.addRows("Catalog", "Products", "select code, name, price from product order by code");
+		source.addText("Catalog", "Total", "select count(*) from product");
+		source.addRows("default", "Countries", "select name from country order by name");
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		execute("drop all objects");
+	}
+
+	@Test
+	public void read() {
+		WebData data = source.read("catalog");
+		int[] rows = data.rows("catalog", "products");
+		assertEquals(2, rows.length);
+		assertEquals("A-1", data.element(rows[0], "code"));
+		assertEquals("1.50", data.element(rows[0], "price"));
+		assertEquals("Banana", data.element(rows[1], "name"));
+		assertEquals(WebData.NONE, data.field(rows[1], "price"));
+		assertEquals("2", data.text("catalog", "total"));
+		assertEquals(0, data.rows("default", "countries").length);
+		assertEquals(0, new WebJdbcRowSource("jdbc:none", null, null).read("catalog").getNodeCount());
+	}
+
+	@Test
+	public void generateFromDatabase() {
+		WebTemplateFinder templateFinder = templateFinder();
+		WebContext xmlContext = new WebContext(SPECIFICATION, null, "en", templateFinder,
+				"<data><catalog><products><product><code>A-1</code><name>Apple</name></product>"
+						+ "<product><code>B-2</code><name>Banana</name></product></products><total>2</total></catalog>"
+						+ "<default><countries><country>Brasil</country><country>Chile</country></countries></default>"
+						+ "</data>");
+		WebContext jdbcContext = new WebContext(new StringReader(SPECIFICATION), null, "en", templateFinder, source);
+		WebPage page = jdbcContext.getPages().get(0);
+		WebArtifact artifact = jdbcContext.generateArtifact(page);
+		assertEquals(xmlContext.generateArtifact(xmlContext.getPages().get(0)).getContent(), artifact.getContent());
+		assertThat(artifact.getContent(), containsString("Banana"));
+		assertThat(artifact.getContent(), containsString("Chile"));
+		assertSame(jdbcContext.getData(page.getTitle()), jdbcContext.getData(page.getTitle()));
+	}
+
+	private void execute(String... statements) throws SQLException {
+		try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+				Statement statement = connection.createStatement()) {
+			for (String sql : statements)
+				statement.execute(sql);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static edworld.webgen.WebTestSupport.getSpecification;
+import static edworld.webgen.WebTestSupport.templateFinder;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebProfilerTest {
+	private WebProfiler profiler;
+
+	@Before
+	public void setUp() {
+		WebInterface webInterface = new WebInterface(getSpecification("/web-interface-specification.wiki"),
+				getSpecification("/data-dictionary.wiki"), "en", templateFinder(),
+				getSpecification("/sample-data.xml"));
+		profiler = new WebProfiler();
+		webInterface.setProfiler(profiler);
+		webInterface.generateArtifacts();
+	}
+
+	@Test
+	public void attributeWorkToSpecificationLines() {
+		List<WebProfiler.HotLine> hotLines = profiler.getHotLines();
+		assertEquals(13 + 10 + 2, hotLines.size());
+		for (int i = 1; i < hotLines.size(); i++)
+			assertTrue(hotLines.get(i - 1).getNanos() >= hotLines.get(i).getNanos());
+		WebProfiler.HotLine table = hotLine(hotLines, "main_page.html", "specification:8");
+		assertEquals("** {Table} THeader1 | THeader2 | THeader3 | THeader4", table.getLine());
+		assertEquals(1, table.getCalls());
+		assertEquals(2, table.getDataRows());
+		assertTrue(table.getTemplateLookups() >= 3);
+		WebProfiler.HotLine filter = hotLine(hotLines, "main_page.html", "specification:6");
+		assertTrue(filter.getTemplateLookups() >= 6);
+		assertEquals("", hotLine(hotLines, "new_official_document.html", WebProfiler.POST_PROCESSING).getLine());
+	}
+
+	@Test
+	public void reportHotLines() {
+		String report = profiler.getHotLinesReport();
+		assertThat(report,
+				startsWith("Time (ms)\tAllocated (KB)\tCalls\tTemplate lookups\tData rows\tPage\tLocation\tLine"));
+		assertThat(report, containsString("\t2\tmain_page.html\tspecification:8\t** {Table} THeader1 |"));
+	}
+
+	@Test
+	public void collapseStacks() {
+		String stacks = profiler.getCollapsedStacks();
+		assertThat(stacks, containsString("main_page.html;specification:8 "));
+		assertThat(stacks, containsString("main_page.html;specification:8;rows tablebodycell "));
+		assertThat(stacks, containsString("main_page.html;specification:6;input FInput1 "));
+		assertThat(stacks, containsString("new_official_document.html;post-processing "));
+		for (String line : stacks.split("\\r?\\n"))
+			assertTrue(line, line.matches("[^ ;]+(;[^;]+)+ \\d+"));
+	}
+
+	@Test
+	public void profileSectionsRenderedAgainOnce() {
+		String section = "* {Section Orders}\n** {Table Orders} Code\n";
+		WebContext orders = new WebContext("== Alpha ==\n" + section + section + section, null, "en",
+				templateFinder(), "<data><alpha><orders_1><order><code>A</code></order></orders_1></alpha></data>");
+		WebProfiler sections = new WebProfiler();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			orders.generateArtifact(orders.getPages().get(0), sections, executor);
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(6 + 1, sections.getHotLines().size());
+		for (WebProfiler.HotLine hotLine : sections.getHotLines())
+			assertEquals(hotLine.getLocation(), 1, hotLine.getCalls());
+	}
+
+	private WebProfiler.HotLine hotLine(List<WebProfiler.HotLine> hotLines, String page, String location) {
+		for (WebProfiler.HotLine hotLine : hotLines)
+			if (hotLine.getPage().equals(page) && hotLine.getLocation().equals(location))
+				return hotLine;
+		throw new AssertionError(location + " of " + page + " not profiled");
+	}
+}
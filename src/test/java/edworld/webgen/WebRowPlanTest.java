@@ -0,0 +1,75 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static edworld.webgen.WebTestSupport.templateFinder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebRowPlanTest {
+	private static final String LINE_BREAK = System.getProperty("line.separator");
+	private WebData data;
+	private WebArtifact artifact;
+
+	@Before
+	public void setUp() throws UnsupportedEncodingException {
+		data = WebData.parse(new ByteArrayInputStream(("<data><page><table>"
+				+ "<row><a class=\"x\">A1</a><b><code>B1</code></b></row>" + "<row><a>A2</a></row>"
+				+ "</table></page></data>").getBytes("UTF-8")));
+		WebContext context = new WebContext("== Page ==", null, "en", templateFinder(), null);
+		artifact = new WebArtifact("Page", "", "page.html", context);
+	}
+
+	@Test
+	public void renderFields() {
+		WebRowPlan plan = new WebRowPlan("<td class=\"${attribute:class}\">${title}</td>", "<tr>${content}</tr>",
+				new String[] { "A", "((class=right) B)" });
+		assertTrue(plan.isCompiled());
+		assertEquals("<tr><td class=\"x\">A1</td><td class=\"right\">B1</td></tr>" + LINE_BREAK
+				+ "<tr><td class=\"\">A2</td><td class=\"\"></td></tr>",
+				plan.render(data, data.rows("page", "table"), artifact));
+		assertEquals(Arrays.asList("A1", "B1", "A2"), artifact.getSearchTexts());
+	}
+
+	@Test
+	public void renderAdditiveAttributes() {
+		WebRowPlan plan = new WebRowPlan("<li ${attribute:class}>${element:code}</li>", "${content}",
+				new String[] { "((class=item) B)" });
+		assertEquals("<liitem>B1</li>" + LINE_BREAK + "<li></li>",
+				plan.render(data, data.rows("page", "table"), artifact));
+	}
+
+	@Test
+	public void renderWholeRows() {
+		WebRowPlan plan = new WebRowPlan("<p>${title}</p>", "<div>${content}</div><hr>${content}", new String[0]);
+		assertEquals("<div><p>A1B1</p></div><hr><p>A1B1</p>",
+				plan.render(data, new int[] { data.rows("page", "table")[0] }, artifact));
+	}
+
+	@Test
+	public void renderIds() {
+		WebRowPlan plan = new WebRowPlan("<li id=\"${id}\">${name}</li>", "${content}", new String[] { "A" });
+		assertEquals("<li id=\"a1\">a1</li>" + LINE_BREAK + "<li id=\"a2\">a2</li>",
+				plan.render(data, data.rows("page", "table"), artifact));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void renderForAnArtifact() {
+		new WebRowPlan("<li id=\"${id}\">${title}</li>", "${content}", new String[0]).render(data,
+				data.rows("page", "table"), null);
+	}
+
+	@Test
+	public void duplicateAttributesAreNotCompiled() {
+		assertFalse(new WebRowPlan("<td class=\"${attribute:class}\" title=\"${attribute:class}\">", "${content}",
+				new String[0]).isCompiled());
+		assertFalse(new WebRowPlan("<td class=\"${attribute: class}\">", "${content}", new String[0]).isCompiled());
+	}
+}
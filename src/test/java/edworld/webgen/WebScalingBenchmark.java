@@ -0,0 +1,144 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.Test;
+
+/**
+ * End-to-end benchmark of generating and saving synthetic corpora of growing
+ * size. Excluded from the default build, run it through
+ * <code>mvn test -P benchmark</code>. The growth of time and allocation is
+ * reported, flagging sweeps growing faster than near-linear, without failing
+ * the build, since timings depend on the machine running it.
+ */
+public class WebScalingBenchmark {
+	private static final double MAX_SCALING_EXPONENT = 1.25;
+	private static final int REPETITIONS = 3;
+	private static final File BENCHMARK_DIR = new File("target/benchmark");
+
+	@Test
+	public void scaleWithPages() throws IOException {
+		int[] sizes = { 10, 20, 40, 80 };
+		Measurement[] measurements = new Measurement[sizes.length];
+		for (int i = 0; i < sizes.length; i++)
+			measurements[i] = measure("pages", sizes[i], new WebCorpusGenerator().pages(sizes[i]));
+		reportScaling("pages", sizes, measurements);
+	}
+
+	@Test
+	public void scaleWithComponentsPerPage() throws IOException {
+		int[] sizes = { 10, 20, 40, 80 };
+		Measurement[] measurements = new Measurement[sizes.length];
+		for (int i = 0; i < sizes.length; i++)
+			measurements[i] = measure("components", sizes[i],
+					new WebCorpusGenerator().pages(5).componentsPerPage(sizes[i]));
+		reportScaling("components per page", sizes, measurements);
+	}
+
+	@Test
+	public void scaleWithTableRows() throws IOException {
+		int[] sizes = { 50, 100, 200, 400 };
+		Measurement[] measurements = new Measurement[sizes.length];
+		for (int i = 0; i < sizes.length; i++)
+			measurements[i] = measure("rows", sizes[i], new WebCorpusGenerator().pages(5).tableRows(sizes[i]));
+		reportScaling("table rows", sizes, measurements);
+	}
+
+	@Test
+	public void scaleWithNestingDepth() throws IOException {
+		int[] sizes = { 1, 2, 4, 8 };
+		Measurement[] measurements = new Measurement[sizes.length];
+		for (int i = 0; i < sizes.length; i++)
+			measurements[i] = measure("depth", sizes[i],
+					new WebCorpusGenerator().pages(5).componentsPerPage(10 * sizes[i]).nestingDepth(sizes[i]));
+		reportScaling("nesting depth (with proportional components)", sizes, measurements);
+	}
+
+	@Test
+	public void scaleWithXmlReferences() throws IOException {
+		int[] sizes = { 5, 10, 20, 40 };
+		Measurement[] measurements = new Measurement[sizes.length];
+		for (int i = 0; i < sizes.length; i++)
+			measurements[i] = measure("xml", sizes[i],
+					new WebCorpusGenerator().pages(5).componentsPerPage(4 * sizes[i]).xmlReferences(sizes[i]));
+		reportScaling("XML= references (with proportional components)", sizes, measurements);
+	}
+
+	private Measurement measure(String sweep, int size, WebCorpusGenerator generator) throws IOException {
+		File dir = new File(BENCHMARK_DIR, sweep + "-" + size);
+		generator.generate(dir);
+		run(dir);
+		Measurement best = null;
+		for (int i = 0; i < REPETITIONS; i++) {
+			Measurement measurement = measureRun(dir);
+			if (best == null || measurement.nanos < best.nanos)
+				best = measurement;
+		}
+		System.out.println(String.format("%-12s size=%5d time=%8.1f ms allocated=%8.1f MB peakHeap=%7.1f MB", sweep,
+				size, best.nanos / 1e6, best.allocatedBytes / 1048576.0, best.peakHeapBytes / 1048576.0));
+		return best;
+	}
+
+	private Measurement measureRun(File dir) throws IOException {
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			pool.resetPeakUsage();
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		run(dir);
+		Measurement measurement = new Measurement();
+		measurement.nanos = System.nanoTime() - start;
+		measurement.allocatedBytes = allocatedBytes() - allocatedBefore;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				measurement.peakHeapBytes += pool.getPeakUsage().getUsed();
+		return measurement;
+	}
+
+	private void run(File dir) throws IOException {
+		WebInterface webInterface = new WebInterface(new FileInputStream(new File(dir, "specification.wiki")),
+				new FileInputStream(new File(dir, "data-dictionary.wiki")), "en",
+				new WebTemplateFinder(new File(dir, "templates")),
+				new FileInputStream(new File(dir, "sample-data.xml")));
+		webInterface.generateArtifacts();
+		webInterface.saveArtifactsToDir(new File(dir, "output"));
+	}
+
+	/**
+	 * Allocation of the current thread, where generation happens, or zero if the
+	 * JVM does not report it.
+	 */
+	private long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+
+	private void reportScaling(String sweep, int[] sizes, Measurement[] measurements) {
+		int last = sizes.length - 1;
+		double sizeRatio = Math.log((double) sizes[last] / sizes[0]);
+		double timeExponent = Math.log((double) measurements[last].nanos / measurements[0].nanos) / sizeRatio;
+		double allocationExponent = measurements[0].allocatedBytes == 0 ? 0
+				: Math.log((double) measurements[last].allocatedBytes / measurements[0].allocatedBytes) / sizeRatio;
+		System.out.println(String.format("%s: time grows as size^%.2f%s, allocation as size^%.2f%s", sweep,
+				timeExponent, flag(timeExponent), allocationExponent, flag(allocationExponent)));
+	}
+
+	private String flag(double exponent) {
+		return exponent > MAX_SCALING_EXPONENT ? " (faster than near-linear)" : "";
+	}
+
+	private static class Measurement {
+		private long nanos;
+		private long allocatedBytes;
+		private long peakHeapBytes;
+	}
+}
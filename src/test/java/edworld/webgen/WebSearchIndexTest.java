@@ -0,0 +1,51 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static edworld.webgen.WebTestSupport.templateFinder;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebSearchIndexTest {
+	private static final String LINE_BREAK = System.getProperty("line.separator");
+	private WebContext context;
+
+	@Before
+	public void setUp() {
+		String specification = "== Página um ==" + LINE_BREAK + "* {Section Common}" + LINE_BREAK + "* {Table} Name"
+				+ LINE_BREAK + "== Page two ==" + LINE_BREAK + "* {Action Hidden}" + LINE_BREAK
+				+ "== Page three ==" + LINE_BREAK + "* {Section Common}" + LINE_BREAK + "* {Table} Name";
+		String data = "<data><pagina_um><_table><row><name>Café <![CDATA[<em>One</em>]]></name></row></_table></pagina_um>"
+				+ "<page_three><_table><row><name>Three</name></row></_table></page_three></data>";
+		context = new WebContext(specification, null, "en", templateFinder(), data);
+	}
+
+	@Test
+	public void terms() {
+		assertEquals(Arrays.asList("acao", "cafe", "x1"), WebSearchIndex.terms("Ação <em>Café</em> &amp; X1 a"));
+	}
+
+	@Test
+	public void indexTitlesHeadingsAndItems() {
+		WebSearchIndex index = new WebSearchIndex();
+		for (WebPage page : context.getPages())
+			index.add(context.generateArtifact(page));
+		assertTrue(context.getComponentMemo().getHits() >= 1);
+		assertEquals(3, index.getDocumentCount());
+		Map<String, String> files = index.getFiles();
+		assertThat(files.get("search/documents.json"), containsString("[\"pagina_um.html\",\"P\\u00E1gina um\"]"));
+		assertEquals("common\t0,2\n", files.get("search/terms-co.txt"));
+		assertEquals("cafe\t0\n", files.get("search/terms-ca.txt"));
+		assertEquals("one\t0\n", files.get("search/terms-on.txt"));
+		assertEquals("page\t1,1\npagina\t0\n", files.get("search/terms-pa.txt"));
+		assertEquals("three\t2\n", files.get("search/terms-th.txt"));
+		assertEquals(null, files.get("search/terms-hi.txt"));
+	}
+}
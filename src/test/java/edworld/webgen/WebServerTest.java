@@ -0,0 +1,126 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static edworld.webgen.WebTestSupport.getSpecification;
+import static edworld.webgen.WebTestSupport.templateFinder;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edworld.util.TextUtil;
+
+public class WebServerTest {
+	private WebServer webServer;
+
+	@Before
+	public void setUp() throws IOException {
+		WebTemplateFinder templateFinder = templateFinder();
+		WebInterface webInterface = new WebInterface(getSpecification("/web-interface-specification.wiki"),
+				getSpecification("/data-dictionary.wiki"), "en", templateFinder, getSpecification("/sample-data.xml"));
+		webServer = new WebServer(webInterface, 1);
+		webServer.start(0);
+	}
+
+	@After
+	public void tearDown() {
+		webServer.stop();
+	}
+
+	@Test
+	public void renderOnDemand() throws IOException {
+		assertThat(get("/new_official_document.html"), containsString("<title>New official document</title>"));
+		assertThat(get("/new_official_document.html"), containsString(
+				"<li class=\"active\"><a href=\"new_official_document.html\">New official document</a></li>"));
+		assertThat(get("/"), containsString("<title>Main page</title>"));
+		assertEquals(1, webServer.getCache().getSize());
+		assertEquals(1, webServer.getCache().getHits());
+		assertEquals(2, webServer.getCache().getMisses());
+		assertEquals(1.0 / 3, webServer.getCache().getHitRate(), 0.001);
+	}
+
+	@Test
+	public void renderOnceForConcurrentRequests() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> responses = new ArrayList<Future<String>>();
+			for (int i = 0; i < 16; i++)
+				responses.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws IOException {
+						return get("/new_official_document.html");
+					}
+				}));
+			for (Future<String> response : responses)
+				assertThat(response.get(), containsString("<title>New official document</title>"));
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, webServer.getCache().getMisses());
+		assertEquals(15, webServer.getCache().getHits());
+	}
+
+	@Test
+	public void generateOnceWhileCached() throws Exception {
+		final AtomicInteger generations = new AtomicInteger();
+		final WebInterface webInterface = new WebInterface(getSpecification("/web-interface-specification.wiki"),
+				getSpecification("/data-dictionary.wiki"), "en", templateFinder(),
+				getSpecification("/sample-data.xml")) {
+			@Override
+			public WebArtifact generateArtifact(String fileName) {
+				generations.incrementAndGet();
+				return super.generateArtifact(fileName);
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for (int round = 1; round <= 20; round++) {
+				final WebArtifactCache cache = new WebArtifactCache(4);
+				List<Future<WebArtifact>> artifacts = new ArrayList<Future<WebArtifact>>();
+				for (int i = 0; i < 16; i++)
+					artifacts.add(executor.submit(new Callable<WebArtifact>() {
+						@Override
+						public WebArtifact call() {
+							return cache.getArtifact("main_page.html", webInterface);
+						}
+					}));
+				for (Future<WebArtifact> artifact : artifacts)
+					assertEquals("Main page", artifact.get().getTitle());
+				assertEquals(round, generations.get());
+				assertEquals(1, cache.getMisses());
+				assertEquals(15, cache.getHits());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void pageNotFound() throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://localhost:" + webServer.getPort() + "/unknown.html").openConnection();
+		assertEquals(404, connection.getResponseCode());
+		assertEquals(0, webServer.getCache().getSize());
+	}
+
+	private String get(String path) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + webServer.getPort() + path)
+				.openConnection();
+		assertEquals(200, connection.getResponseCode());
+		return new TextUtil().extractText(connection.getInputStream());
+	}
+}
@@ -0,0 +1,116 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static edworld.webgen.WebTestSupport.TEMPLATES_DIR;
+import static edworld.webgen.WebTestSupport.deleteFiles;
+import static edworld.webgen.WebTestSupport.getSpecification;
+import static edworld.webgen.WebTestSupport.templateFinder;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebShardCoordinatorTest {
+	private File inputDir = new File("target/web-shards-input");
+	private WebInterface webInterface;
+
+	@Before
+	public void setUp() throws IOException {
+		String specification = getSpecification("/web-interface-specification.wiki")
+				+ "\n== Third page ==\n* {Menu}\n* {Section Third}";
+		String dictionary = getSpecification("/data-dictionary.wiki");
+		String data = getSpecification("/sample-data.xml");
+		write("specification.wiki", specification);
+		write("data-dictionary.wiki", dictionary);
+		write("sample-data.xml", data);
+		webInterface = new WebInterface(specification, dictionary, "en", templateFinder(), data);
+	}
+
+	@Test
+	public void generateShardsLikeASingleProcess() throws IOException {
+		File singleDir = new File("target/web-shards-single");
+		File dir = new File("target/web-shards");
+		deleteFiles(dir);
+		webInterface.generateArtifactsToDir(singleDir);
+		WebShardCoordinator coordinator = new WebShardCoordinator(new File(inputDir, "specification.wiki"),
+				new File(inputDir, "data-dictionary.wiki"), "en", TEMPLATES_DIR, new File(inputDir, "sample-data.xml"),
+				2);
+		File snapshot = new File(inputDir, "context.snapshot");
+		snapshot.delete();
+		coordinator.setSnapshot(snapshot);
+		WebOutputChanges changes = coordinator.generateArtifactsToDir(dir);
+		assertTrue(snapshot.isFile());
+		assertEquals(Arrays.asList("main_page.html", "new_official_document.html", "third_page.html"),
+				changes.getAdded());
+		for (String fileName : changes.getAdded())
+			assertEquals(read(new File(singleDir, fileName)), read(new File(dir, fileName)));
+		webInterface.generateArtifacts();
+		assertEquals(webInterface.getReports().get(0).getContent(), coordinator.getReports().get(0).getContent());
+		Files.write(new File(dir, "old_page.html").toPath(), "removed page".getBytes("UTF-8"));
+		Files.write(new File(dir, ".webgen-artifacts").toPath(), "old_page.html".getBytes("UTF-8"));
+		changes = coordinator.generateArtifactsToDir(dir);
+		assertEquals(3, changes.getUnchanged().size());
+		assertEquals(Arrays.asList("old_page.html"), changes.getRemoved());
+		assertThat(changes.getAdded().isEmpty() && changes.getChanged().isEmpty(), is(true));
+	}
+
+	@Test
+	public void generateDetailPagesInShards() throws IOException {
+		String specification = "== Catalog ==\n* {Menu}\n* {Table Products} Code::link | Name\n"
+				+ "== ${row:name} (each=catalog/products key=code) ==\n* {Menu}\n"
+				+ "* {Section Product ${row:code}}\n** <p>${row:name} costs ${row:price}</p>";
+		String data = "<data><catalog><products><product><code>A-1</code><name>Apple</name><price>2</price></product>"
+				+ "<product><code>B 2</code><name>Banana</name><price>3</price></product></products></catalog>"
+				+ "<default><note>Shared</note></default></data>";
+		write("catalog.wiki", specification);
+		write("catalog.xml", data);
+		File singleDir = new File("target/web-shards-catalog-single");
+		File dir = new File("target/web-shards-catalog");
+		deleteFiles(dir);
+		new WebInterface(specification, null, "en", templateFinder(), data).generateArtifactsToDir(singleDir);
+		WebShardCoordinator coordinator = new WebShardCoordinator(new File(inputDir, "catalog.wiki"), null, "en",
+				TEMPLATES_DIR, new File(inputDir, "catalog.xml"), 2);
+		WebOutputChanges changes = coordinator.generateArtifactsToDir(dir);
+		assertEquals(Arrays.asList("catalog.html", "a-1.html", "b_2.html"), changes.getAdded());
+		for (String fileName : changes.getAdded())
+			assertEquals(read(new File(singleDir, fileName)), read(new File(dir, fileName)));
+		assertThat(read(new File(dir, "b_2.html")), containsString("<p>Banana costs 3</p>"));
+		assertThat(read(new File(dir, "a-1.html")), containsString("<a href=\"catalog.html\">Catalog</a>"));
+	}
+
+	@Test
+	public void summaryLine() {
+		WebPageWeight weight = new WebPageWeight("A\ttitle\\", "a.html", 1234, 5, 3, 2,
+				Arrays.asList(new WebPageWeight.Component("specification:7", "* {Table}", 900)));
+		WebShardSummary summary = WebShardSummary.parse(new WebShardSummary(7, weight, 4, "added").toLine());
+		assertEquals(7, summary.getPageIndex());
+		assertEquals("A\ttitle\\", summary.getTitle());
+		assertEquals("a.html", summary.getFileName());
+		assertEquals(3, summary.getDataInputs());
+		assertEquals(4, summary.getDataOutputs());
+		assertEquals("added", summary.getChange());
+		assertEquals(1234, summary.getWeight().getBytes());
+		assertEquals(5, summary.getWeight().getTableRows());
+		assertEquals(2, summary.getWeight().getMenuEntries());
+		assertEquals("specification:7 (900 chars)", summary.getWeight().getLargestComponents().get(0).toString());
+	}
+
+	private void write(String name, String content) throws IOException {
+		inputDir.mkdirs();
+		Files.write(new File(inputDir, name).toPath(), content.getBytes("UTF-8"));
+	}
+
+	private String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+
+}
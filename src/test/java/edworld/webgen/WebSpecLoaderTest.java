@@ -0,0 +1,86 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebSpecLoaderTest {
+	private File dir = new File("target/web-spec-include");
+
+	@Before
+	public void setUp() throws IOException {
+		write("group-a.wiki", "== Page A ==\n* {Section A}\n{{include:nested/part.wiki}}\n== Page B ==\n* {Section B}");
+		write("nested/part.wiki", "** {Table Part} One | Two");
+		write("group-c.wiki", "== Page C ==\n* {Section C}");
+		write("loop.wiki", "== Loop ==\n{{include:loop.wiki}}");
+	}
+
+	private void write(String name, String content) throws IOException {
+		File file = new File(dir, name);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes("UTF-8"));
+	}
+
+	@Test
+	public void loadPages() {
+		List<WebPage> pages = new WebSpecLoader().loadPages("Preface\n== Main ==\n* {Menu}\n{{include:" + dir.getPath()
+				+ "/group-a.wiki}}\n  {{include:" + new File(dir, "group-c.wiki").toURI() + "}}  \n* {Section D}");
+		assertEquals(4, pages.size());
+		assertEquals("Main", pages.get(0).getTitle());
+		assertEquals(Arrays.asList("* {Menu}"), pages.get(0).getLines());
+		assertEquals("page_a.html", pages.get(1).getFileName());
+		assertEquals(Arrays.asList("* {Section A}", "** {Table Part} One | Two"), pages.get(1).getLines());
+		assertEquals(Arrays.asList("* {Section B}"), pages.get(2).getLines());
+		assertEquals("Page C", pages.get(3).getTitle());
+		assertEquals(Arrays.asList("* {Section C}", "* {Section D}"), pages.get(3).getLines());
+	}
+
+	@Test
+	public void loadPagesFromReader() {
+		String specification = "Preface\r\n== Main ==\r\n* {Menu}\r\n\r\n* {Section S}\r\n{{include:" + dir.getPath()
+				+ "/group-c.wiki}}\r\n\r\n\r\n";
+		List<WebPage> expected = new WebSpecLoader().loadPages(specification);
+		List<WebPage> pages = new WebSpecLoader().loadPages(new StringReader(specification));
+		assertEquals(expected.size(), pages.size());
+		for (int i = 0; i < pages.size(); i++) {
+			assertEquals(expected.get(i).getTitle(), pages.get(i).getTitle());
+			assertEquals(expected.get(i).getLines(), pages.get(i).getLines());
+		}
+		assertEquals(Arrays.asList("* {Menu}", "", "* {Section S}"), pages.get(0).getLines());
+	}
+
+	@Test
+	public void parseUnchangedFragmentsOnce() throws IOException {
+		String specification = "== Main ==\n{{include:" + dir.getPath() + "/group-a.wiki}}";
+		WebSpecLoader loader = new WebSpecLoader();
+		loader.loadPages(specification);
+		long parses = loader.getParses();
+		loader.loadPages(specification);
+		assertEquals(parses, loader.getParses());
+		assertEquals(parses, loader.getHits());
+		write("nested/part.wiki", "** {Table Part} One | Two | Three");
+		List<WebPage> pages = loader.loadPages(specification);
+		assertEquals(parses + 1, loader.getParses());
+		assertEquals("** {Table Part} One | Two | Three", pages.get(1).getLines().get(1));
+		assertEquals(3, pages.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void circularInclude() {
+		new WebSpecLoader().loadPages("{{include:" + dir.getPath() + "/loop.wiki}}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingFragment() {
+		new WebSpecLoader().loadPages("{{include:" + dir.getPath() + "/missing.wiki}}");
+	}
+}
@@ -0,0 +1,37 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import java.io.File;
+
+import edworld.util.TextUtil;
+
+/**
+ * Inputs and files shared by the tests.
+ */
+public class WebTestSupport {
+	public static final File TEMPLATES_DIR = new File("target/web-templates");
+
+	public static WebTemplateFinder templateFinder() {
+		return new WebTemplateFinder(TEMPLATES_DIR);
+	}
+
+	/**
+	 * Reads a test resource, pointing its <code>XML=</code> references to the
+	 * test resources.
+	 */
+	public static String getSpecification(String resourceName) {
+		String specification = new TextUtil().extractText(WebTestSupport.class.getResourceAsStream(resourceName));
+		specification = specification.replace("(XML=/references.xml)",
+				"(XML=" + WebTestSupport.class.getResource("/references.xml") + ")");
+		specification = specification.replace("(XML=/countries.xml)",
+				"(XML=" + WebTestSupport.class.getResource("/countries.xml") + ")");
+		return specification;
+	}
+
+	public static void deleteFiles(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+	}
+}
@@ -0,0 +1,56 @@
+// This open source code is distributed without warranties according to the license published at http://www.apache.org/licenses/LICENSE-2.0
+package edworld.webgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class XmlDocumentCacheTest {
+	private XmlDocumentCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new XmlDocumentCache();
+	}
+
+	@Test
+	public void parseOncePerReference() {
+		String reference = getClass().getResource("/countries.xml").toString();
+		assertSame(cache.getDocument(reference), cache.getDocument(reference));
+		assertEquals(1, cache.getParses());
+		assertEquals(1, cache.getHits());
+		assertTrue(cache.getEstimatedMemory() > 0);
+	}
+
+	@Test
+	public void parseAgainWhenModified() throws IOException {
+		File file = new File("target/web-test/cached.xml");
+		file.getParentFile().mkdirs();
+		write(file, "<data><item>1</item></data>");
+		file.setLastModified(1000000000000L);
+		String reference = file.getPath();
+		String first = cache.getDocument(reference).text("data", "item");
+		write(file, "<data><item>2</item></data>");
+		file.setLastModified(2000000000000L);
+		String second = cache.getDocument(reference).text("data", "item");
+		assertEquals("1", first);
+		assertEquals("2", second);
+		assertEquals(2, cache.getParses());
+	}
+
+	private void write(File file, String content) throws IOException {
+		PrintWriter out = new PrintWriter(file, "UTF-8");
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+}